@@ -0,0 +1,44 @@
+package io.neson.react.notification;
+
+import android.app.PendingIntent;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.v7.app.NotificationCompat;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Renders incoming calls (`offer` payloads): Answer and Deny actions, and an
+ * insistent alert until the user reacts.
+ */
+public class CallNotificationRenderer implements NotificationRenderer {
+    public static final String TYPE = "offer";
+
+    private static final String ANSWER_ACTION = "com.mobile.CallPushNotifIntent";
+    private static final String DENY_ACTION = "com.oney.gcm.GCMReceiveNotification";
+
+    @Override
+    public android.app.Notification render(Notification notification, NotificationPayload payload, NotificationCompat.Builder builder) {
+        builder
+            .addAction(0, "Answer", getIntent(notification, "call", ANSWER_ACTION, "offer"))
+            .addAction(0, "Deny", getIntent(notification, "deny", DENY_ACTION, "deny"));
+
+        android.app.Notification built = builder.build();
+        built.flags |= android.app.Notification.FLAG_INSISTENT;
+
+        return built;
+    }
+
+    private PendingIntent getIntent(Notification notification, String kind, String action, String type) {
+        JsonObject notificationBody = new JsonObject();
+        notificationBody.addProperty("type", type);
+
+        Bundle bundle = new Bundle();
+        bundle.putString("notificationBody", notificationBody.toString());
+
+        Intent intent = new Intent(action);
+        intent.putExtra("bundle", bundle);
+
+        return NotificationResources.getInstance(notification.getContext()).getBroadcast(kind, notification.getId(), "", intent);
+    }
+}
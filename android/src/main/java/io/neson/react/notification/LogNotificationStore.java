@@ -0,0 +1,459 @@
+package io.neson.react.notification;
+
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+import android.util.Log;
+
+/**
+ * Log-structured notification store.
+ *
+ * Every change is appended to a single file as a checksummed record, so the
+ * cost of saving or deleting a notification doesn't grow with the number of
+ * stored notifications. Each committed transaction is synced to disk. Once
+ * superseded records take more space than live ones, the log is compacted
+ * into a new file which atomically replaces the old one.
+ *
+ * A torn record at the end of the log (e.g. after a crash) is dropped when
+ * loading. The length of each record is checked before it's trusted, so
+ * only a record that runs past the end of the file, or ends there with a bad
+ * checksum, is taken for torn. Any other corruption or read error fails the
+ * load and leaves the file untouched.
+ *
+ * File layout: a header (magic, version), then records of
+ * [op: byte][id: int][length: int][crc32 of the above: int]
+ * [attributes: length bytes][crc32 of all the above: int]. Version 1 logs,
+ * without the first checksum and the length in the second, are rewritten
+ * when loaded.
+ */
+public class LogNotificationStore implements NotificationStore {
+    private static final int MAGIC = 0x524E534E;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 1;
+    private static final int RECORD_OVERHEAD = 1 + 4 + 4 + 4 + 4;
+    private static final int RECORD_OVERHEAD_V1 = 1 + 4 + 4 + 4;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    // Don't bother compacting small logs
+    private static final long MIN_COMPACTION_SIZE = 64 * 1024;
+
+    private final File file;
+    private FileOutputStream out = null;
+    private boolean loaded = false;
+    private int fileVersion = VERSION;
+    private long fileSize = 0;
+    private long liveSize = 0;
+    private final SparseIntArray liveRecordSizes = new SparseIntArray();
+
+    /**
+     * Constructor.
+     */
+    public LogNotificationStore(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public synchronized SparseArray<NotificationAttributes> loadAll() {
+        SparseArray<byte[]> records = loadAllRecords();
+        SparseArray<NotificationAttributes> attributes = new SparseArray<NotificationAttributes>(records.size());
+
+        for (int i = 0; i < records.size(); i++) {
+            try {
+                attributes.put(records.keyAt(i), NotificationAttributesCodec.decode(records.valueAt(i)));
+            } catch (Exception e) {
+                Log.e("ReactSystemNotification", "LogNotificationStore: loadAll Error: " + Log.getStackTraceString(e));
+            }
+        }
+
+        return attributes;
+    }
+
+    @Override
+    public synchronized SparseArray<byte[]> loadAllRecords() {
+        SparseArray<byte[]> records = replay();
+
+        if (fileVersion < VERSION || shouldCompact()) compact(records);
+
+        return records;
+    }
+
+    @Override
+    public Transaction edit() {
+        return new LogTransaction();
+    }
+
+    /**
+     * Whether the log file exists.
+     */
+    public boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * Write all notifications of another store into a new log, if there is
+     * no log yet. The log is written aside and moved in place once synced,
+     * so an interrupted import is simply retried. Returns whether the
+     * notifications have been imported.
+     */
+    public synchronized boolean importFrom(NotificationStore source) {
+        if (file.exists()) return false;
+
+        SparseArray<NotificationAttributes> attributes = source.loadAll();
+        SparseArray<byte[]> records = new SparseArray<byte[]>(attributes.size());
+
+        for (int i = 0; i < attributes.size(); i++) {
+            records.put(attributes.keyAt(i), NotificationAttributesCodec.encode(attributes.valueAt(i)));
+        }
+
+        if (!compact(records)) return false;
+
+        Log.i("ReactSystemNotification", "LogNotificationStore: Imported " + records.size() + " notifications");
+        return true;
+    }
+
+    /**
+     * Append a batch of records and sync them to disk.
+     */
+    private synchronized void commit(byte[] batch, SparseIntArray recordSizes) {
+        long startTime = NotificationMetrics.start();
+        if (!loaded) {
+            SparseArray<byte[]> records = replay();
+
+            // Records are appended in the current version only
+            if (fileVersion < VERSION && !compact(records)) {
+                throw new RuntimeException("Failed to upgrade notification log");
+            }
+        }
+
+        try {
+            if (out == null) {
+                boolean isNew = fileSize == 0;
+                out = new FileOutputStream(file, !isNew);
+
+                if (isNew) {
+                    DataOutputStream header = new DataOutputStream(out);
+                    header.writeInt(MAGIC);
+                    header.writeByte(VERSION);
+                    header.flush();
+                    fileSize = HEADER_SIZE;
+                }
+            }
+
+            out.write(batch);
+            out.getFD().sync();
+            fileSize += batch.length;
+
+        } catch (IOException e) {
+            closeQuietly();
+            // The records that made it to disk will be found by the next replay
+            loaded = false;
+            throw new RuntimeException("Failed to write notification log", e);
+        }
+
+        for (int i = 0; i < recordSizes.size(); i++) {
+            int id = recordSizes.keyAt(i);
+            int size = recordSizes.valueAt(i);
+
+            liveSize -= liveRecordSizes.get(id, 0);
+            if (size > 0) {
+                liveRecordSizes.put(id, size);
+                liveSize += size;
+            } else {
+                liveRecordSizes.delete(id);
+            }
+        }
+
+        if (shouldCompact()) compact(replay());
+
+        NotificationMetrics.record(NotificationMetrics.PERSIST, startTime);
+    }
+
+    private boolean shouldCompact() {
+        return fileSize > MIN_COMPACTION_SIZE && fileSize - HEADER_SIZE > 2 * liveSize;
+    }
+
+    /**
+     * Read the log, returning the live records by id. Drops a torn last
+     * record, throws on any other error. Must be called while holding the
+     * lock.
+     */
+    private SparseArray<byte[]> replay() {
+        closeQuietly();
+
+        SparseArray<byte[]> records = new SparseArray<byte[]>();
+        liveRecordSizes.clear();
+        liveSize = 0;
+        fileSize = 0;
+        fileVersion = VERSION;
+        loaded = false;
+
+        if (!file.exists()) {
+            loaded = true;
+            return records;
+        }
+
+        long length = file.length();
+        long offset = 0;
+
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+            try {
+                if (in.readInt() != MAGIC) throw new IOException("Not a notification log");
+                int version = in.readUnsignedByte();
+                if (version > VERSION) throw new IOException("Unsupported notification log version: " + version);
+                fileVersion = version;
+                offset = HEADER_SIZE;
+
+                CRC32 crc = new CRC32();
+                int overhead = version == 1 ? RECORD_OVERHEAD_V1 : RECORD_OVERHEAD;
+
+                while (offset < length) {
+                    byte op = in.readByte();
+                    int id = in.readInt();
+                    int size = in.readInt();
+
+                    if (version == 1) {
+                        // Lengths can't be checked, one running past the end
+                        // is taken for a torn record
+                        if (size < 0) throw new IOException("Corrupt record at " + offset);
+                    } else if (in.readInt() != checksum(crc, op, id, size, null) || size < 0) {
+                        throw new IOException("Corrupt record header at " + offset);
+                    }
+
+                    int recordSize = overhead + size;
+                    if (offset + recordSize > length) break;
+                    boolean last = offset + recordSize == length;
+
+                    byte[] payload = new byte[size];
+                    in.readFully(payload);
+                    int checksum = in.readInt();
+
+                    int expected = version == 1 ? checksumV1(crc, op, id, payload) : checksum(crc, op, id, size, payload);
+                    if (expected != checksum) {
+                        if (last) break;
+                        throw new IOException("Checksum mismatch at " + offset);
+                    }
+
+                    if (op == OP_PUT) {
+                        records.put(id, payload);
+                        liveSize += recordSize - liveRecordSizes.get(id, 0);
+                        liveRecordSizes.put(id, recordSize);
+                    } else if (op == OP_REMOVE) {
+                        records.remove(id);
+                        liveSize -= liveRecordSizes.get(id, 0);
+                        liveRecordSizes.delete(id);
+                    } else {
+                        throw new IOException("Unknown operation " + op + " at " + offset);
+                    }
+
+                    offset += recordSize;
+                }
+            } finally {
+                in.close();
+            }
+
+        } catch (EOFException e) {
+            // Torn record or header, dropped below
+        } catch (IOException e) {
+            Log.e("ReactSystemNotification", "LogNotificationStore: replay Error: " + Log.getStackTraceString(e));
+            throw new RuntimeException("Failed to read notification log", e);
+        }
+
+        if (offset < HEADER_SIZE) {
+            // Torn before the header was synced, nothing was committed: the
+            // next commit rewrites the file from the start
+            offset = 0;
+
+        } else if (offset < length) {
+            Log.w("ReactSystemNotification", "LogNotificationStore: Dropping " + (length - offset) + " bytes of torn log");
+            truncate(offset);
+        }
+
+        fileSize = offset;
+        loaded = true;
+        return records;
+    }
+
+    /**
+     * Rewrite the log with only the live records. Returns whether it has
+     * been replaced. Must be called while holding the lock.
+     */
+    private boolean compact(SparseArray<byte[]> records) {
+        closeQuietly();
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+
+        try {
+            FileOutputStream tmpOut = new FileOutputStream(tmpFile);
+
+            try {
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(tmpOut));
+                data.writeInt(MAGIC);
+                data.writeByte(VERSION);
+
+                for (int i = 0; i < records.size(); i++) {
+                    writeRecord(data, OP_PUT, records.keyAt(i), records.valueAt(i));
+                }
+
+                data.flush();
+                tmpOut.getFD().sync();
+            } finally {
+                tmpOut.close();
+            }
+
+            if (!tmpFile.renameTo(file)) throw new IOException("Failed to replace " + file);
+            syncDirectory();
+
+        } catch (IOException e) {
+            tmpFile.delete();
+            Log.e("ReactSystemNotification", "LogNotificationStore: compact Error: " + Log.getStackTraceString(e));
+            return false;
+        }
+
+        long previousSize = fileSize;
+        replay();
+
+        Log.i("ReactSystemNotification", "LogNotificationStore: Compacted " + previousSize + " to " + fileSize + " bytes");
+        return true;
+    }
+
+    private void truncate(long size) {
+        try {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                randomAccessFile.setLength(size);
+                randomAccessFile.getFD().sync();
+            } finally {
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            Log.e("ReactSystemNotification", "LogNotificationStore: truncate Error: " + Log.getStackTraceString(e));
+        }
+    }
+
+    /**
+     * Sync the directory of the log, so a rename is durable. Not possible
+     * before Lollipop, where it's left to the file system.
+     */
+    private void syncDirectory() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) return;
+
+        try {
+            FileDescriptor fd = Os.open(file.getAbsoluteFile().getParent(), OsConstants.O_RDONLY, 0);
+            try {
+                Os.fsync(fd);
+            } finally {
+                Os.close(fd);
+            }
+        } catch (ErrnoException e) {
+            Log.e("ReactSystemNotification", "LogNotificationStore: syncDirectory Error: " + Log.getStackTraceString(e));
+        }
+    }
+
+    private void closeQuietly() {
+        if (out == null) return;
+
+        try {
+            out.close();
+        } catch (IOException e) {
+            // Nothing left to flush, every commit is synced
+        }
+        out = null;
+    }
+
+    private static int writeRecord(DataOutputStream data, byte op, int id, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+
+        data.writeByte(op);
+        data.writeInt(id);
+        data.writeInt(payload.length);
+        data.writeInt(checksum(crc, op, id, payload.length, null));
+        data.write(payload);
+        data.writeInt(checksum(crc, op, id, payload.length, payload));
+
+        return RECORD_OVERHEAD + payload.length;
+    }
+
+    /**
+     * The checksum of a record header, and of its attributes if given.
+     */
+    private static int checksum(CRC32 crc, byte op, int id, int size, byte[] payload) {
+        crc.reset();
+        crc.update(op);
+        updateInt(crc, id);
+        updateInt(crc, size);
+        if (payload != null) crc.update(payload);
+
+        return (int) crc.getValue();
+    }
+
+    private static int checksumV1(CRC32 crc, byte op, int id, byte[] payload) {
+        crc.reset();
+        crc.update(op);
+        updateInt(crc, id);
+        crc.update(payload);
+
+        return (int) crc.getValue();
+    }
+
+    private static void updateInt(CRC32 crc, int value) {
+        crc.update(value >>> 24); crc.update(value >>> 16); crc.update(value >>> 8); crc.update(value);
+    }
+
+    private class LogTransaction implements Transaction {
+        private final ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        private final DataOutputStream data = new DataOutputStream(batch);
+
+        // Size of the live record of each changed id, 0 when removed
+        private final SparseIntArray recordSizes = new SparseIntArray();
+
+        @Override
+        public Transaction put(int id, NotificationAttributes attributes) {
+            try {
+                recordSizes.put(id, writeRecord(data, OP_PUT, id, NotificationAttributesCodec.encode(attributes)));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return this;
+        }
+
+        @Override
+        public Transaction remove(int id) {
+            try {
+                writeRecord(data, OP_REMOVE, id, new byte[0]);
+                recordSizes.put(id, 0);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return this;
+        }
+
+        @Override
+        public void commit() {
+            if (batch.size() == 0) return;
+
+            LogNotificationStore.this.commit(batch.toByteArray(), recordSizes);
+        }
+    }
+}
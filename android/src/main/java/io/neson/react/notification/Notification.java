@@ -1,41 +1,23 @@
 package io.neson.react.notification;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.os.Build;
-import android.os.SystemClock;
-import android.os.Bundle;
 import android.app.PendingIntent;
 import android.app.AlarmManager;
 import android.app.NotificationManager;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.support.annotation.Nullable;
-import android.net.Uri;
-import android.webkit.CookieManager;
 
 import java.lang.System;
 import java.util.HashMap;
 import java.util.Map;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.io.InputStream;
-import java.io.BufferedInputStream;
-
-import com.google.gson.Gson;
-import com.google.gson.JsonParser;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonPrimitive;
 
 import io.neson.react.notification.NotificationAttributes;
 import io.neson.react.notification.NotificationEventReceiver;
 import io.neson.react.notification.NotificationPublisher;
 import android.support.v7.app.NotificationCompat;
 import android.text.Html;
-import android.util.Base64;
 import android.util.Log;
-import android.graphics.Color;
 
 /**
  * An object-oriented Wrapper class around the system notification class.
@@ -57,6 +39,13 @@ public class Notification {
         this.attributes = attributes;
     }
 
+    /**
+     * Public id getter.
+     */
+    public int getId() {
+        return id;
+    }
+
     /**
      * Public context getter.
      */
@@ -75,9 +64,26 @@ public class Notification {
      * Create the notification, show it now or set the schedule.
      */
     public Notification create() {
-        setAlarmAndSaveOrShow();
+        NotificationStore.Transaction transaction = getStore().edit();
+        create(transaction);
+        transaction.commit();
 
-        Log.i("ReactSystemNotification", "Notification Created: " + id);
+        return this;
+    }
+
+    /**
+     * Create the notification, recording the persistence changes in the
+     * given transaction. The caller is responsible for committing it.
+     */
+    public Notification create(NotificationStore.Transaction transaction) {
+        long startTime = NotificationMetrics.start();
+        setAlarmAndSaveOrShow(transaction);
+        NotificationMetrics.record(NotificationMetrics.CREATE, startTime);
+
+        if (isSaved()) NotificationChangeFeed.created(id, attributes);
+        else NotificationChangeFeed.fired(id, null);
+
+        if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "Notification Created: " + id);
 
         return this;
     }
@@ -86,9 +92,24 @@ public class Notification {
      * Update the notification, resets its schedule.
      */
     public Notification update(NotificationAttributes notificationAttributes) {
-        delete();
+        NotificationStore.Transaction transaction = getStore().edit();
+        update(notificationAttributes, transaction);
+        transaction.commit();
+
+        return this;
+    }
+
+    /**
+     * Update the notification, recording the persistence changes in the
+     * given transaction. The caller is responsible for committing it.
+     */
+    public Notification update(NotificationAttributes notificationAttributes, NotificationStore.Transaction transaction) {
+        delete(transaction);
         attributes = notificationAttributes;
-        setAlarmAndSaveOrShow();
+        setAlarmAndSaveOrShow(transaction);
+
+        if (isSaved()) NotificationChangeFeed.updated(id, attributes);
+        else NotificationChangeFeed.fired(id, null);
 
         return this;
     }
@@ -97,9 +118,13 @@ public class Notification {
      * Clear the notification from the status bar.
      */
     public Notification clear() {
+        NotificationImageLoader.cancel(id);
+        NotificationGrouper.clear(id);
+        NotificationThrottler.cancel(id);
         getSysNotificationManager().cancel(id);
+        NotificationChangeFeed.cleared(id);
 
-        Log.i("ReactSystemNotification", "Notification Cleared: " + id);
+        if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "Notification Cleared: " + id);
 
         return this;
     }
@@ -108,15 +133,32 @@ public class Notification {
      * Cancel the notification.
      */
     public Notification delete() {
+        NotificationStore.Transaction transaction = getStore().edit();
+        delete(transaction);
+        transaction.commit();
+
+        return this;
+    }
+
+    /**
+     * Cancel the notification, recording the persistence changes in the
+     * given transaction. The caller is responsible for committing it.
+     */
+    public Notification delete(NotificationStore.Transaction transaction) {
+        NotificationImageLoader.cancel(id);
+        NotificationThrottler.cancel(id);
         getSysNotificationManager().cancel(id);
 
-        if (attributes.delayed || attributes.scheduled) {
+        // No attributes if it isn't saved, e.g. shown at once
+        if (attributes != null && isSaved()) {
             cancelAlarm();
         }
 
-        deleteFromPreferences();
+        deleteFromPreferences(transaction);
+        getResources().removePendingIntents(id);
+        NotificationChangeFeed.deleted(id);
 
-        Log.i("ReactSystemNotification", "Notification Deleted: " + id);
+        if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "Notification Deleted: " + id);
 
         return this;
     }
@@ -129,154 +171,69 @@ public class Notification {
         return notificationBuilder.build();
     }
 
-    private android.app.Notification createMessageNotification(android.support.v7.app.NotificationCompat.Builder notificationBuilder, JsonObject notifData) {
-        // fetch the relevant data or die
-        try {
-        JsonPrimitive messageBodyPrimitive = notifData.getAsJsonPrimitive("body");
-        String messageBody = messageBodyPrimitive.getAsString();
-        JsonPrimitive messageNamePrimitive = notifData.getAsJsonPrimitive("name");
-        String messageName = messageNamePrimitive.getAsString();
-        String messageText = messageName + " said " + messageBody;
-        notificationBuilder
-            .setContentTitle("New message")
-            .setContentText(messageText);
-        return notificationBuilder.build();
-        } catch (Exception e) {
-        Log.i("XKCD", "missing data, or whatever: " + e.toString());
-        return this.createErrorNotif(notificationBuilder);
-        }
-
+    /**
+     * Build the notification, loading its images first.
+     *
+     * Blocks on network and decoding, call it on a background thread.
+     */
+    public android.app.Notification build() {
+        return build(loadLargeIcon(), loadBigPicture());
     }
 
-    private android.app.Notification createCallNotif(android.support.v7.app.NotificationCompat.Builder notificationBuilder) {
-        notificationBuilder
-        .setContentTitle("BLAH")
-        .setContentText("BLUH")
-        .addAction(0, "ANSWER", getCallIntent())
-        .addAction(0, "DENY", getDenyIntent());
-        return notificationBuilder.build();
+    /**
+     * Build the notification with already loaded images. Images that are
+     * null are left out, with the large icon falling back to the app icon.
+     */
+    public android.app.Notification build(@Nullable Bitmap largeIconBitmap, @Nullable Bitmap bigPicture) {
+        long startTime = NotificationMetrics.start();
 
+        try {
+            return buildNotification(largeIconBitmap, bigPicture);
+        } finally {
+            NotificationMetrics.record(NotificationMetrics.BUILD, startTime);
+        }
     }
 
-    /**
-     * Build the notification.
-     */
-    public android.app.Notification build() {
+    private android.app.Notification buildNotification(@Nullable Bitmap largeIconBitmap, @Nullable Bitmap bigPicture) {
         android.support.v7.app.NotificationCompat.Builder notificationBuilder = new android.support.v7.app.NotificationCompat.Builder(context);
-        // HERE
-        // grab the profile URL form the PN
-        // fetch the image from the network
-        // jam it into largeIcon
-        int largeIconResId = 0;
-        URL largeIconURL = null;
-        HttpURLConnection fetchProfilePictureConnection = null;
-        Bitmap largeIconBitmap = null;
-        JsonObject attributesObject = null;
+        NotificationResources resources = getResources();
+        NotificationPayload payload;
 
-        String notifType = null;
-
-        JsonParser jsonParser = new JsonParser();
-        Log.i("ReactSystemNotification", "PAYLOAD" + attributes.payload);
+        if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "Notification Payload: " + id + ", " + attributes.payload);
 
         // set the small icon
-        // TODO set it to the ones Brenda sent
-        notificationBuilder.setSmallIcon(context.getResources().getIdentifier("ic_launcher", "mipmap", context.getPackageName()));
+        notificationBuilder.setSmallIcon(resources.getIdentifier("ic_launcher", "mipmap"));
 
         // parse the payload attributes or fail with an error notif
         try {
-            attributesObject = (JsonObject)jsonParser.parse(attributes.payload);
+            payload = resources.getPayload(attributes.payload);
         } catch (Exception e) {
-            Log.i("XKCD", "Error when parsing payload attributes" + e.toString());
+            Log.e("ReactSystemNotification", "Notification: build Error: " + Log.getStackTraceString(e));
             return createErrorNotif(notificationBuilder);
         }
-        // fetch the avatar pic, or set the default one
-        try {
-            CookieManager cookieManager = CookieManager.getInstance();
-            if(!cookieManager.hasCookies()) {
-                    throw new Exception("No cookies in cookie manager");
-            }
-            JsonPrimitive avatarJsonPrimitive = attributesObject.getAsJsonPrimitive("avatarUrl");
-            String avatarUrl = avatarJsonPrimitive.getAsString();
-
-            largeIconURL = new URL(avatarUrl);
-            String vidaoCookies = cookieManager.getCookie(largeIconURL.getHost());
-
-            fetchProfilePictureConnection = (HttpURLConnection) largeIconURL.openConnection();
-            fetchProfilePictureConnection.addRequestProperty("Cookie", vidaoCookies);
 
-            InputStream in = new BufferedInputStream(fetchProfilePictureConnection.getInputStream());
-            largeIconBitmap = BitmapFactory.decodeStream(in);
-
-            notificationBuilder.setLargeIcon(largeIconBitmap);
-        } catch (Exception e) {
-            Log.i("XKCD", "Error when setting avatar pic: " + e.toString());
-            largeIconResId = context.getResources().getIdentifier("ic_launcher", "mipmap", context.getPackageName());
-            largeIconBitmap = BitmapFactory.decodeResource(context.getResources(), largeIconResId);
-            notificationBuilder.setLargeIcon(largeIconBitmap);
+        // set the avatar pic, or the default one
+        if (largeIconBitmap == null) {
+            largeIconBitmap = NotificationBitmapCache.getInstance(context).getDefaultLargeIcon();
         }
+        notificationBuilder.setLargeIcon(largeIconBitmap);
 
         // find type of notif or fail and die
-        try {
-            JsonPrimitive typeJsonPrimitive = attributesObject.getAsJsonPrimitive("type");
-            notifType = typeJsonPrimitive.getAsString();
-        } catch (Exception e) {
-            Log.i("XKCD", "Error when finding type of notif: " + e.toString());
+        if (payload.type == null) {
+            Log.e("ReactSystemNotification", "Notification: build Error: No type in the payload of " + id);
             return createErrorNotif(notificationBuilder);
         }
 
-        if (notifType.equals("offer")) {
-            notificationBuilder
-            .addAction(0, "Answer", getCallIntent())
-            .addAction(0, "Deny", getDenyIntent());
-        }
-
-        /*
-        if (notifType.equals("offer")) {
-            Log.i("XKCD", "CREATING CALL NOTIF");
-            return this.createCallNotif(notificationBuilder);
-        } else if (notifType.equals("message")) {
-            Log.i("XKCD", "CREATING MESSAGE NOTIF");
-            return this.createMessageNotification(notificationBuilder, attributesObject);
-        } else if (null != notifType) {
-            String imgoinginsane = "insane";
-            Log.i("XKCD", "i am going mad mike: " + imgoinginsane);
-            Log.i("XKCD", "wtf is that notificationType: " + notifType);
-            return this.createErrorNotif(notificationBuilder);
-        }
-        */
-
-            // here's a call
-            // 07-27 15:15:34.370    1286    1391 I ReactSystemNotification: PAYLOAD{"from":"blep","to":"gotadirectory","type":"offer"}
-            // here's a bye
-            // 07-27 15:15:44.396    1286    1407 I ReactSystemNotification: PAYLOAD{"from":"blep","to":"gotadirectory","type":"bye"}
-            // here's a message
-            // 07-27 15:18:51.782    1286    1579 I ReactSystemNotification: PAYLOAD{"secs":79355,"name":null,"from":"blep","id":10,"to":"gotadirectory","lang":"en","body":"blop","cid":"cid_7906e1ab","ts":"2016-07-27T22:18:50.986Z"}
-            // what I'm gonna do here
-            // is add a type or some shit to that payload
-            // have one "createNotification" method per type
-            // call the right one depending
-            // they will all be pretty simple except for the call and bye ones
-            // which will involve, respectively, the app, and removing a tray notif
-            // I will also pull the profile pic url of that data
-            // meaning I'l have to modify the server-side code to add that
-
-
         notificationBuilder
             .setContentTitle(attributes.subject)
             .setContentText(attributes.message)
-            .setSmallIcon(context.getResources().getIdentifier("ic_launcher", "mipmap", context.getPackageName()))
             .setAutoCancel(attributes.autoClear)
             .setContentIntent(getContentIntent());
 
-        // I have a hauch that all this shit should run even with my custom notifs
         if (attributes.priority != null) {
             notificationBuilder.setPriority(attributes.priority);
         }
 
-
-        if ( largeIconResId != 0 && (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.LOLLIPOP ) ) {
-            notificationBuilder.setLargeIcon(largeIconBitmap);
-        }
         if(attributes.inboxStyle){
 
             android.support.v7.app.NotificationCompat.InboxStyle inboxStyle = new android.support.v7.app.NotificationCompat.InboxStyle();
@@ -293,9 +250,13 @@ public class Notification {
                 }
             }
 
-            Log.i("ReactSystemNotification", "set inbox style!!");
+            notificationBuilder.setStyle(inboxStyle);
+
+            if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "set inbox style!!");
+        }
 
-        }else{
+        // Group summaries alert like the messages they bundle
+        if (!attributes.inboxStyle || attributes.group != null) {
 
             int defaults = 0;
             if ("default".equals(attributes.sound)) {
@@ -311,6 +272,13 @@ public class Notification {
 
         }
 
+        if (attributes.group != null) {
+            notificationBuilder
+                .setGroup(attributes.group)
+                .setGroupSummary(attributes.inboxStyle)
+                .setDeleteIntent(getDismissIntent());
+        }
+
         if (attributes.onlyAlertOnce != null) {
             notificationBuilder.setOnlyAlertOnce(attributes.onlyAlertOnce);
         }
@@ -330,30 +298,13 @@ public class Notification {
                 .setStyle(new android.support.v7.app.NotificationCompat.BigTextStyle()
                 .bigText(attributes.bigText));
         }
-        else if (attributes.bigStyleImageBase64 != null) {
-
-            Bitmap bigPicture = null;
-
-            try {
-
-                Log.i("ReactSystemNotification", "start to convert bigStyleImageBase64 to bitmap");
-                // Convert base64 image to Bitmap
-                byte[] bitmapAsBytes = Base64.decode(attributes.bigStyleImageBase64.getBytes(), Base64.DEFAULT);
-                bigPicture = BitmapFactory.decodeByteArray(bitmapAsBytes, 0, bitmapAsBytes.length);
-                Log.i("ReactSystemNotification", "finished to convert bigStyleImageBase64 to bitmap");
-
-            } catch (Exception e) {
-                Log.e("ReactSystemNotification", "Error when converting base 64 to Bitmap" + e.getStackTrace());
-            }
-
-            if (bigPicture != null) {
-                notificationBuilder
-                        .setStyle(new NotificationCompat.BigPictureStyle().bigPicture(bigPicture));
-            }
+        else if (bigPicture != null) {
+            notificationBuilder
+                    .setStyle(new NotificationCompat.BigPictureStyle().bigPicture(bigPicture));
         }
 
         if (attributes.color != null) {
-            notificationBuilder.setColor(Color.parseColor(attributes.color));
+            notificationBuilder.setColor(resources.getColor(attributes.color));
         }
 
         if (attributes.subText != null) {
@@ -377,38 +328,145 @@ public class Notification {
         }
 
         if (attributes.sound != null) {
-            notificationBuilder.setSound(Uri.parse(attributes.sound));
+            notificationBuilder.setSound(resources.getUri(attributes.sound));
         }
 
-        if (notifType.equals("offer")){
-            android.app.Notification notif = notificationBuilder.build();
-            notif.flags |= android.app.Notification.FLAG_INSISTENT;
-            return notif;
-        } else {
-            return notificationBuilder.build();
-        }
+        return NotificationRenderers.get(payload.type).render(this, payload, notificationBuilder);
     }
 
     /**
      * Show the notification now.
+     *
+     * The notification is posted without images right away, images are
+     * loaded in the background and the notification is updated with them.
      */
     public void show() {
-        getSysNotificationManager().notify(id, build());
+        // Grouped notifications are posted by their group once its window closes
+        if (attributes.group == null && NotificationGrouper.add(this)) return;
 
-        Log.i("ReactSystemNotification", "Notification Show: " + id);
+        long startTime = NotificationMetrics.start();
+        post(build(null, null));
+        NotificationMetrics.record(NotificationMetrics.SHOW, startTime);
+
+        if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "Notification Show: " + id);
+
+        if (hasImages()) NotificationImageLoader.load(this);
+    }
+
+    /**
+     * Update the shown notification with its loaded images, without alerting
+     * the user again.
+     */
+    public void showWithImages(@Nullable Bitmap largeIcon, @Nullable Bitmap bigPicture) {
+        android.app.Notification notification = build(largeIcon, bigPicture);
+        notification.flags |= android.app.Notification.FLAG_ONLY_ALERT_ONCE;
+
+        post(notification);
+
+        if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "Notification Show With Images: " + id);
+    }
+
+    /**
+     * Post through the rate limiter, group summaries right away.
+     */
+    private void post(android.app.Notification notification) {
+        if (attributes.group != null) {
+            NotificationThrottler.notifyNow(context, id, notification);
+        } else {
+            NotificationThrottler.notify(context, id, notification);
+        }
+    }
+
+    /**
+     * Whether the notification has images to load.
+     */
+    public boolean hasImages() {
+        return hasBigPicture() || getAvatarUrl() != null;
+    }
+
+    /**
+     * Fetch the avatar pic of the notification, null if there is none or on
+     * failure. Blocks on network.
+     */
+    @Nullable
+    public Bitmap loadLargeIcon() {
+        String avatarUrl = getAvatarUrl();
+        if (avatarUrl == null) return null;
+
+        try {
+            return NotificationBitmapCache.getInstance(context).getLargeIcon(avatarUrl);
+        } catch (Exception e) {
+            Log.e("ReactSystemNotification", "Notification: loadLargeIcon Error: " + Log.getStackTraceString(e));
+            return null;
+        }
+    }
+
+    /**
+     * Decode the big picture of the notification, null if there is none or
+     * on failure.
+     */
+    @Nullable
+    public Bitmap loadBigPicture() {
+        if (!hasBigPicture()) return null;
+
+        try {
+            if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "start to convert bigStyleImageBase64 to bitmap");
+            NotificationBitmapCache bitmapCache = NotificationBitmapCache.getInstance(context);
+            Bitmap bigPicture = attributes.bigStyleImageBase64 != null ?
+                bitmapCache.getBigPicture(attributes.bigStyleImageBase64) :
+                bitmapCache.getStoredBigPicture(attributes.bigStyleImageRef);
+            if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "finished to convert bigStyleImageBase64 to bitmap");
+
+            return bigPicture;
+        } catch (Exception e) {
+            Log.e("ReactSystemNotification", "Error when converting base 64 to Bitmap" + e.getStackTrace());
+            return null;
+        }
+    }
+
+    // if bigText is not null, it have priority over bigStyleImageBase64
+    private boolean hasBigPicture() {
+        return attributes.bigText == null && (attributes.bigStyleImageBase64 != null || attributes.bigStyleImageRef != null);
+    }
+
+    @Nullable
+    private String getAvatarUrl() {
+        try {
+            return getResources().getPayload(attributes.payload).avatarUrl;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether the notification is saved, to be shown later, as opposed to
+     * shown at once.
+     */
+    private boolean isSaved() {
+        return attributes.delayed || attributes.scheduled;
     }
 
     /**
      * Setup alarm or show the notification.
      */
     public void setAlarmAndSaveOrShow() {
+        NotificationStore.Transaction transaction = getStore().edit();
+        setAlarmAndSaveOrShow(transaction);
+        transaction.commit();
+    }
+
+    /**
+     * Setup alarm or show the notification, recording the persistence
+     * changes in the given transaction.
+     */
+    public void setAlarmAndSaveOrShow(NotificationStore.Transaction transaction) {
         if (attributes.delayed) {
             setDelay();
-            saveAttributesToPreferences();
+            saveAttributesToPreferences(transaction);
 
         } else if (attributes.scheduled) {
             setSchedule();
-            saveAttributesToPreferences();
+            saveAttributesToPreferences(transaction);
 
         } else {
             show();
@@ -419,109 +477,78 @@ public class Notification {
      * Schedule the delayed notification.
      */
     public void setDelay() {
-        PendingIntent pendingIntent = getScheduleNotificationIntent();
-
-        long futureInMillis = SystemClock.elapsedRealtime() + attributes.delay;
-        getAlarmManager().set(AlarmManager.ELAPSED_REALTIME_WAKEUP, futureInMillis, pendingIntent);
+        attributes.nextFireAt = System.currentTimeMillis() + attributes.delay;
+        getScheduler().schedule(id, attributes.nextFireAt);
 
-        Log.i("ReactSystemNotification", "Notification Delay Alarm Set: " + id + ", Repeat Type: " + attributes.repeatType + ", Current Time: " + System.currentTimeMillis() + ", Delay: " + attributes.delay);
+        if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "Notification Delay Set: " + id + ", Repeat Type: " + attributes.repeatType + ", Current Time: " + System.currentTimeMillis() + ", Delay: " + attributes.delay);
     }
 
     /**
      * Schedule the notification.
      */
     public void setSchedule() {
-        PendingIntent pendingIntent = getScheduleNotificationIntent();
+        attributes.nextFireAt = NotificationRecurrence.next(attributes, System.currentTimeMillis());
 
-        if (attributes.repeatType == null) {
-            getAlarmManager().set(AlarmManager.RTC_WAKEUP, attributes.sendAt, pendingIntent);
-            Log.i("ReactSystemNotification", "Set One-Time Alarm: " + id);
-
-        } else {
-            switch (attributes.repeatType) {
-                case "time":
-                    getAlarmManager().setRepeating(AlarmManager.RTC_WAKEUP, attributes.sendAt, attributes.repeatTime, pendingIntent);
-                    Log.i("ReactSystemNotification", "Set " + attributes.repeatTime + "ms Alarm: " + id);
-                    break;
-
-                case "minute":
-                    getAlarmManager().setRepeating(AlarmManager.RTC_WAKEUP, attributes.sendAt, 60000, pendingIntent);
-                    Log.i("ReactSystemNotification", "Set Minute Alarm: " + id);
-                    break;
-
-                case "hour":
-                    getAlarmManager().setRepeating(AlarmManager.RTC_WAKEUP, attributes.sendAt, AlarmManager.INTERVAL_HOUR, pendingIntent);
-                    Log.i("ReactSystemNotification", "Set Hour Alarm: " + id);
-                    break;
-
-                case "halfDay":
-                    getAlarmManager().setRepeating(AlarmManager.RTC_WAKEUP, attributes.sendAt, AlarmManager.INTERVAL_HALF_DAY, pendingIntent);
-                    Log.i("ReactSystemNotification", "Set Half-Day Alarm: " + id);
-                    break;
-
-                case "day":
-                case "week":
-                case "month":
-                case "year":
-                    getAlarmManager().setRepeating(AlarmManager.RTC_WAKEUP, attributes.sendAt, AlarmManager.INTERVAL_DAY, pendingIntent);
-                    Log.i("ReactSystemNotification", "Set Day Alarm: " + id + ", Type: " + attributes.repeatType);
-                    break;
-
-                default:
-                    getAlarmManager().set(AlarmManager.RTC_WAKEUP, attributes.sendAt, pendingIntent);
-                    Log.i("ReactSystemNotification", "Set One-Time Alarm: " + id);
-                    break;
-            }
+        if (attributes.nextFireAt != null) {
+            getScheduler().schedule(id, attributes.nextFireAt);
         }
 
-        Log.i("ReactSystemNotification", "Notification Schedule Alarm Set: " + id + ", Repeat Type: " + attributes.repeatType + ", Current Time: " + System.currentTimeMillis() + ", First Send At: " + attributes.sendAt);
+        if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "Notification Schedule Set: " + id + ", Repeat Type: " + attributes.repeatType + ", Current Time: " + System.currentTimeMillis() + ", First Send At: " + attributes.sendAt + ", Next Send At: " + attributes.nextFireAt);
     }
 
     /**
      * Cancel the delayed notification.
      */
     public void cancelAlarm() {
-        PendingIntent pendingIntent = getScheduleNotificationIntent();
-        getAlarmManager().cancel(pendingIntent);
+        getScheduler().unschedule(id);
+
+        // Alarm set by an earlier version, if any
+        PendingIntent legacyIntent = getScheduleNotificationIntent(PendingIntent.FLAG_NO_CREATE);
+        if (legacyIntent != null) {
+            getAlarmManager().cancel(legacyIntent);
+            legacyIntent.cancel();
+        }
 
-        Log.i("ReactSystemNotification", "Notification Alarm Canceled: " + id);
+        if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "Notification Alarm Canceled: " + id);
     }
 
     public void saveAttributesToPreferences() {
-        SharedPreferences.Editor editor = getSharedPreferences().edit();
-
-        String attributesJSONString = new Gson().toJson(attributes);
+        NotificationStore.Transaction transaction = getStore().edit();
+        saveAttributesToPreferences(transaction);
+        transaction.commit();
+    }
 
-        editor.putString(Integer.toString(id), attributesJSONString);
+    public void saveAttributesToPreferences(NotificationStore.Transaction transaction) {
+        NotificationImageStore.getInstance(context).externalize(attributes);
+        transaction.put(id, attributes);
 
-        if (Build.VERSION.SDK_INT < 9) {
-            editor.commit();
-        } else {
-            editor.apply();
-        }
+        NotificationAttributesCache.put(context, id, attributes);
 
-        Log.i("ReactSystemNotification", "Notification Saved To Pref: " + id + ": " + attributesJSONString);
+        if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "Notification Saved To Pref: " + id);
     }
 
     public void loadAttributesFromPreferences() {
-        String attributesJSONString = getSharedPreferences().getString(Integer.toString(id), null);
-        this.attributes = (NotificationAttributes) new Gson().fromJson(attributesJSONString, NotificationAttributes.class);
+        this.attributes = NotificationAttributesCache.get(context, id);
 
-        Log.i("ReactSystemNotification", "Notification Loaded From Pref: " + id + ": " + attributesJSONString);
+        if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "Notification Loaded From Pref: " + id);
     }
 
     public void deleteFromPreferences() {
-        SharedPreferences.Editor editor = getSharedPreferences().edit();
+        NotificationStore.Transaction transaction = getStore().edit();
+        deleteFromPreferences(transaction);
+        transaction.commit();
+    }
 
-        editor.remove(Integer.toString(id));
+    public void deleteFromPreferences(NotificationStore.Transaction transaction) {
+        transaction.remove(id);
 
-        if (Build.VERSION.SDK_INT < 9) {
-            editor.commit();
-        } else {
-            editor.apply();
+        NotificationAttributesCache.remove(context, id);
+
+        if (attributes != null && attributes.bigStyleImageRef != null) {
+            NotificationImageStore.getInstance(context).release(attributes.bigStyleImageRef);
         }
 
-        Log.i("ReactSystemNotification", "Notification Deleted From Pref: " + id);
+        if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "Notification Deleted From Pref: " + id);
     }
 
     private NotificationManager getSysNotificationManager() {
@@ -532,40 +559,16 @@ public class Notification {
         return (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
     }
 
-    private SharedPreferences getSharedPreferences () {
-        return (SharedPreferences) context.getSharedPreferences(io.neson.react.notification.NotificationManager.PREFERENCES_KEY, Context.MODE_PRIVATE);
-    }
-
-    private PendingIntent getCallIntent() {
-        // Intent intent = new Intent(context, NotificationEventReceiver.class);
-        Intent intent = new Intent("com.mobile.CallPushNotifIntent");
-        Bundle bundle = new Bundle();
-        JsonObject notificationBody = new JsonObject();
-        notificationBody.addProperty("type", "offer");
-        bundle.putString("notificationBody", notificationBody.toString());
-        intent.putExtra("bundle", bundle);
-        Log.i("XKCD", "CREATING CALL INTENT");
-        return PendingIntent.getBroadcast(context, id, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    private NotificationScheduler getScheduler() {
+        return NotificationScheduler.getInstance(context);
     }
 
-    private PendingIntent getDenyIntent() {
-        // Intent intent = new Intent(context, NotificationEventReceiver.class);
-        // Intent intent = new Intent("com.mobile.CallPushNotifIntent");
-        Intent intent = new Intent("com.oney.gcm.GCMReceiveNotification");
-        Bundle bundle = new Bundle();
-        JsonObject notificationBody = new JsonObject();
-        notificationBody.addProperty("type", "deny");
-        bundle.putString("notificationBody", notificationBody.toString());
-        // intent.putExtra("type", "deny");
-        intent.putExtra("bundle", bundle);
-        Log.i("XKCD", "CREATING CALL INTENT");
-        return PendingIntent.getBroadcast(context, id, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    private NotificationResources getResources() {
+        return NotificationResources.getInstance(context);
     }
 
-    private PendingIntent getByeIntent() {
-        Intent intent = new Intent(context, NotificationEventReceiver.class);
-        intent.putExtra("what_am_I_doing", "bye");
-        return PendingIntent.getBroadcast(context, id, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    private NotificationStore getStore() {
+        return io.neson.react.notification.NotificationManager.getStore(context);
     }
 
     private PendingIntent getContentIntent() {
@@ -575,15 +578,28 @@ public class Notification {
         intent.putExtra(NotificationEventReceiver.ACTION, attributes.action);
         intent.putExtra(NotificationEventReceiver.PAYLOAD, attributes.payload);
 
-        return PendingIntent.getBroadcast(context, id, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+        return getResources().getBroadcast("content", id, attributes.action + "\n" + attributes.payload, intent);
     }
 
-    private PendingIntent getScheduleNotificationIntent() {
+    private PendingIntent getDismissIntent() {
+        Intent intent = new Intent(context, NotificationEventReceiver.class);
+
+        // An action of its own, so it doesn't replace the content intent
+        intent.setAction(NotificationEventReceiver.DISMISSED);
+        intent.putExtra(NotificationEventReceiver.NOTIFICATION_ID, id);
+        intent.putExtra(NotificationEventReceiver.DISMISSED, true);
+
+        return getResources().getBroadcast("dismiss", id, "", intent);
+    }
+
+    /**
+     * The per-notification alarm intent used by earlier versions, before
+     * NotificationScheduler.
+     */
+    private PendingIntent getScheduleNotificationIntent(int flags) {
         Intent notificationIntent = new Intent(context, NotificationPublisher.class);
         notificationIntent.putExtra(NotificationPublisher.NOTIFICATION_ID, id);
 
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, id, notificationIntent, PendingIntent.FLAG_UPDATE_CURRENT);
-
-        return pendingIntent;
+        return PendingIntent.getBroadcast(context, id, notificationIntent, flags);
     }
 }
@@ -6,11 +6,15 @@ import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Iterator;
 
-import com.facebook.react.bridge.WritableNativeMap;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 
 public class NotificationAttributes {
     public Integer id;
@@ -61,39 +65,208 @@ public class NotificationAttributes {
     public String inboxStyleSummaryText;
     public ArrayList<String> inboxStyleLines;
 
-    public void loadFromMap(Map map) {
-        WritableMap writableMap = (WritableMap) new WritableNativeMap();
-
-        Iterator entries = map.entrySet().iterator();
+    public String groupBy;
+    public Integer groupWindow;
+
+    // Key of the group the notification is shown in, set by NotificationGrouper
+    public transient String group;
+
+    // When the scheduler will publish the notification next, kept internal
+    public Long nextFireAt;
+
+    // Hash of the big picture moved out of line by NotificationImageStore, kept internal
+    public String bigStyleImageRef;
+
+    // Persisted fields this version doesn't know, kept by NotificationAttributesCodec
+    public transient byte[] unknownFields;
+
+    /**
+     * A copy of the attributes, safe to keep while the original changes.
+     */
+    public NotificationAttributes copy() {
+        NotificationAttributes copy = new NotificationAttributes();
+        copy.id = id;
+        copy.subject = subject;
+        copy.message = message;
+        copy.action = action;
+        copy.payload = payload;
+        copy.delayed = delayed;
+        copy.delay = delay;
+        copy.scheduled = scheduled;
+        copy.sendAt = sendAt;
+        copy.sendAtYear = sendAtYear;
+        copy.sendAtMonth = sendAtMonth;
+        copy.sendAtDay = sendAtDay;
+        copy.sendAtWeekDay = sendAtWeekDay;
+        copy.sendAtHour = sendAtHour;
+        copy.sendAtMinute = sendAtMinute;
+        copy.repeatEvery = repeatEvery;
+        copy.repeatType = repeatType;
+        copy.repeatTime = repeatTime;
+        copy.repeatCount = repeatCount;
+        copy.endAt = endAt;
+        copy.priority = priority;
+        copy.smallIcon = smallIcon;
+        copy.largeIcon = largeIcon;
+        copy.sound = sound;
+        copy.vibrate = vibrate;
+        copy.lights = lights;
+        copy.autoClear = autoClear;
+        copy.onlyAlertOnce = onlyAlertOnce;
+        copy.tickerText = tickerText;
+        copy.when = when;
+        copy.bigText = bigText;
+        copy.bigStyleImageBase64 = bigStyleImageBase64;
+        copy.subText = subText;
+        copy.progress = progress;
+        copy.color = color;
+        copy.number = number;
+        copy.category = category;
+        copy.localOnly = localOnly;
+        copy.inboxStyle = inboxStyle;
+        copy.inboxStyleBigContentTitle = inboxStyleBigContentTitle;
+        copy.inboxStyleSummaryText = inboxStyleSummaryText;
+        copy.inboxStyleLines = inboxStyleLines == null ? null : new ArrayList<String>(inboxStyleLines);
+        copy.groupBy = groupBy;
+        copy.groupWindow = groupWindow;
+        copy.group = group;
+        copy.nextFireAt = nextFireAt;
+        copy.bigStyleImageRef = bigStyleImageRef;
+        copy.unknownFields = unknownFields == null ? null : unknownFields.clone();
+        return copy;
+    }
 
-        while (entries.hasNext()) {
-            Map.Entry entry = (Map.Entry) entries.next();
-            String key = (String) entry.getKey();
+    /**
+     * Load the attributes from a plain map, such as the one built by
+     * NotificationAttributesEncoder, in a single pass over its entries.
+     *
+     * Numbers may be any Number or a numeric string, nested objects a Map or a
+     * JSON element. Unknown keys are ignored.
+     */
+    public void loadFromMap(Map<String, ?> map) {
+        autoClear = true;
+        inboxStyle = false;
+
+        for (Map.Entry<String, ?> entry : map.entrySet()) {
             Object value = entry.getValue();
+            if (value == null || value instanceof JsonNull) continue;
+
+            switch (entry.getKey()) {
+                case "id": id = toInteger(value); break;
+                case "subject": subject = toStringValue(value); break;
+                case "message": message = toStringValue(value); break;
+                case "action": action = toStringValue(value); break;
+                case "payload": payload = toStringValue(value); break;
+
+                case "delayed": delayed = toBoolean(value); break;
+                case "delay": delay = toInteger(value); break;
+
+                case "scheduled": scheduled = toBoolean(value); break;
+                case "sendAt": sendAt = toLong(value); break;
+                case "sendAtYear": sendAtYear = toInteger(value); break;
+                case "sendAtMonth": sendAtMonth = toInteger(value); break;
+                case "sendAtDay": sendAtDay = toInteger(value); break;
+                case "sendAtWeekDay": sendAtWeekDay = toInteger(value); break;
+                case "sendAtHour": sendAtHour = toInteger(value); break;
+                case "sendAtMinute": sendAtMinute = toInteger(value); break;
+
+                case "repeatEvery": repeatEvery = toStringValue(value); break;
+                case "repeatType": repeatType = toStringValue(value); break;
+                case "repeatTime": repeatTime = toInteger(value); break;
+                case "repeatCount": repeatCount = toInteger(value); break;
+                case "endAt": endAt = toLong(value); break;
+
+                case "priority": priority = toInteger(value); break;
+                case "smallIcon": smallIcon = toStringValue(value); break;
+                case "largeIcon": largeIcon = toStringValue(value); break;
+                case "sound": sound = toStringValue(value); break;
+                case "vibrate": vibrate = toStringValue(value); break;
+                case "lights": lights = toStringValue(value); break;
+                case "autoClear": autoClear = toBoolean(value); break;
+                case "onlyAlertOnce": onlyAlertOnce = toBoolean(value); break;
+                case "tickerText": tickerText = toStringValue(value); break;
+                case "when": when = toLong(value); break;
+                case "bigText": bigText = toStringValue(value); break;
+                case "bigStyleImageBase64": bigStyleImageBase64 = toStringValue(value); break;
+                case "subText": subText = toStringValue(value); break;
+                case "progress": progress = toInteger(value); break;
+                case "color": color = toStringValue(value); break;
+                case "number": number = toInteger(value); break;
+                case "category": category = toStringValue(value); break;
+                case "localOnly": localOnly = toBoolean(value); break;
+
+                case "inboxStyle": loadInboxStyle(value); break;
+
+                case "groupBy": groupBy = toStringValue(value); break;
+                case "groupWindow": groupWindow = toInteger(value); break;
+            }
+        }
+    }
 
-            if ("id".equals(key) || value.getClass().equals(Integer.class) || value.getClass().equals(Long.class)) {
-                Number v = (Number) value;
-                writableMap.putInt(key, (Integer) v.intValue());
+    private void loadInboxStyle(Object value) {
+        Object bigContentTitle;
+        Object summaryText;
+        Object lines;
+
+        if (value instanceof JsonObject) {
+            JsonObject object = (JsonObject) value;
+            bigContentTitle = object.get("bigContentTitle");
+            summaryText = object.get("summaryText");
+            lines = object.get("lines");
+        } else if (value instanceof Map) {
+            Map object = (Map) value;
+            bigContentTitle = object.get("bigContentTitle");
+            summaryText = object.get("summaryText");
+            lines = object.get("lines");
+        } else {
+            return;
+        }
 
-            } else if (value.getClass().equals(Float.class) || value.getClass().equals(Double.class)) {
-                writableMap.putDouble(key, (Double) value);
+        inboxStyle = true;
+        inboxStyleBigContentTitle = bigContentTitle == null || bigContentTitle instanceof JsonNull ? null : toStringValue(bigContentTitle);
+        inboxStyleSummaryText = summaryText == null || summaryText instanceof JsonNull ? null : toStringValue(summaryText);
+        inboxStyleLines = new ArrayList<>();
 
-            } else if (value.getClass().equals(String.class)) {
-                writableMap.putString(key, (String) value);
+        if (lines instanceof JsonArray) {
+            for (JsonElement line : (JsonArray) lines) inboxStyleLines.add(toStringValue(line));
+        } else if (lines instanceof List) {
+            for (Object line : (List) lines) inboxStyleLines.add(toStringValue(line));
+        }
+    }
 
-            } else if (value.getClass().equals(Boolean.class)) {
-                writableMap.putBoolean(key, (Boolean) value);
+    private static Integer toInteger(Object value) {
+        if (value instanceof Number) return ((Number) value).intValue();
+        if (value instanceof JsonPrimitive) return ((JsonPrimitive) value).getAsInt();
+        return (int) Double.parseDouble(value.toString());
+    }
 
-            } else {
-                Gson gson = new Gson();
-                String json = gson.toJson(value);
-                writableMap.putString(key, json);
-            }
-        }
+    private static Long toLong(Object value) {
+        if (value instanceof Number) return ((Number) value).longValue();
+        if (value instanceof JsonPrimitive) return ((JsonPrimitive) value).getAsLong();
+        return Long.parseLong(value.toString());
+    }
 
-        loadFromReadableMap((ReadableMap) writableMap);
+    private static Boolean toBoolean(Object value) {
+        if (value instanceof Boolean) return (Boolean) value;
+        if (value instanceof JsonPrimitive) return ((JsonPrimitive) value).getAsBoolean();
+        return Boolean.parseBoolean(value.toString());
     }
 
+    private static String toStringValue(Object value) {
+        if (value instanceof String) return (String) value;
+        if (value instanceof JsonPrimitive) return ((JsonPrimitive) value).getAsString();
+        if (value instanceof JsonElement) return value.toString();
+        if (value instanceof Map || value instanceof List) return new Gson().toJson(value);
+        return value.toString();
+    }
+
+    /**
+     * Load the attributes from a JS object. Every call made on the native map
+     * crosses JNI, and JS sends every default, so probing the known fields
+     * makes fewer calls than walking its keys, which takes three per key, see
+     * BridgeBindingBenchmarkTest. Timestamps may be numbers or, as sent by
+     * earlier versions of the JS module, numeric strings.
+     */
     public void loadFromReadableMap(ReadableMap readableMap) {
         if (readableMap.hasKey("id")) id = readableMap.getInt("id");
         if (readableMap.hasKey("subject")) subject = readableMap.getString("subject");
@@ -105,7 +278,7 @@ public class NotificationAttributes {
         if (readableMap.hasKey("delay")) delay = readableMap.getInt("delay");
 
         if (readableMap.hasKey("scheduled")) scheduled = readableMap.getBoolean("scheduled");
-        if (readableMap.hasKey("sendAt")) sendAt = Long.parseLong(readableMap.getString("sendAt"));
+        if (readableMap.hasKey("sendAt")) sendAt = getTime(readableMap, "sendAt");
         if (readableMap.hasKey("sendAtYear")) sendAtYear = readableMap.getInt("sendAtYear");
         if (readableMap.hasKey("sendAtMonth")) sendAtMonth = readableMap.getInt("sendAtMonth");
         if (readableMap.hasKey("sendAtDay")) sendAtDay = readableMap.getInt("sendAtDay");
@@ -117,7 +290,7 @@ public class NotificationAttributes {
         if (readableMap.hasKey("repeatType")) repeatType = readableMap.getString("repeatType");
         if (readableMap.hasKey("repeatTime")) repeatTime = readableMap.getInt("repeatTime");
         if (readableMap.hasKey("repeatCount")) repeatCount = readableMap.getInt("repeatCount");
-        if (readableMap.hasKey("endAt")) endAt = Long.parseLong(readableMap.getString("endAt"));
+        if (readableMap.hasKey("endAt")) endAt = getTime(readableMap, "endAt");
 
         if (readableMap.hasKey("priority")) priority = readableMap.getInt("priority");
         if (readableMap.hasKey("smallIcon")) smallIcon = readableMap.getString("smallIcon");
@@ -129,7 +302,7 @@ public class NotificationAttributes {
         else autoClear = true;
         if (readableMap.hasKey("onlyAlertOnce")) onlyAlertOnce = readableMap.getBoolean("onlyAlertOnce");
         if (readableMap.hasKey("tickerText")) tickerText = readableMap.getString("tickerText");
-        if (readableMap.hasKey("when")) when = Long.parseLong(readableMap.getString("when"));
+        if (readableMap.hasKey("when")) when = getTime(readableMap, "when");
         if (readableMap.hasKey("bigText")) bigText = readableMap.getString("bigText");
         if (readableMap.hasKey("bigStyleImageBase64")) bigStyleImageBase64 = readableMap.getString("bigStyleImageBase64");
         if (readableMap.hasKey("subText")) subText = readableMap.getString("subText");
@@ -139,22 +312,34 @@ public class NotificationAttributes {
         if (readableMap.hasKey("category")) category = readableMap.getString("category");
         if (readableMap.hasKey("localOnly")) localOnly = readableMap.getBoolean("localOnly");
 
-        if (readableMap.hasKey("inboxStyle")){
-            inboxStyle = true;
-            ReadableMap inboxStyle = readableMap.getMap("inboxStyle");
+        if (readableMap.hasKey("inboxStyle")) loadInboxStyle(readableMap.getMap("inboxStyle"));
+        else inboxStyle = false;
+
+        if (readableMap.hasKey("groupBy")) groupBy = readableMap.getString("groupBy");
+        if (readableMap.hasKey("groupWindow")) groupWindow = readableMap.getInt("groupWindow");
+    }
+
+    private void loadInboxStyle(ReadableMap readableMap) {
+        inboxStyle = true;
+        inboxStyleLines = new ArrayList<>();
 
-            inboxStyleBigContentTitle = inboxStyle.getString("bigContentTitle");
-            inboxStyleSummaryText = inboxStyle.getString("summaryText");
+        if (readableMap.hasKey("bigContentTitle")) inboxStyleBigContentTitle = readableMap.getString("bigContentTitle");
+        if (readableMap.hasKey("summaryText")) inboxStyleSummaryText = readableMap.getString("summaryText");
 
-            ReadableArray inboxLines = inboxStyle.getArray("lines");
-            inboxStyleLines = new ArrayList<>();
-            for(int i=0; i < inboxLines.size(); i++){
-                inboxStyleLines.add(inboxLines.getString(i));
+        if (readableMap.hasKey("lines")) {
+            ReadableArray lines = readableMap.getArray("lines");
+            for (int i = 0, size = lines.size(); i < size; i++) {
+                inboxStyleLines.add(lines.getString(i));
             }
-        }else{
-            inboxStyle = false;
         }
+    }
 
+    private static Long getTime(ReadableMap readableMap, String key) {
+        switch (readableMap.getType(key)) {
+            case Null: return null;
+            case String: return Long.parseLong(readableMap.getString(key));
+            default: return (long) readableMap.getDouble(key);
+        }
     }
 
     public ReadableMap asReadableMap() {
@@ -170,7 +355,7 @@ public class NotificationAttributes {
         if (delay != null) writableMap.putInt("delay", delay);
 
         if (scheduled != null) writableMap.putBoolean("scheduled", scheduled);
-        if (sendAt != null) writableMap.putString("sendAt", Long.toString(sendAt));
+        if (sendAt != null) writableMap.putDouble("sendAt", sendAt);
         if (sendAtYear != null) writableMap.putInt("sendAtYear", sendAtYear);
         if (sendAtMonth != null) writableMap.putInt("sendAtMonth", sendAtMonth);
         if (sendAtDay != null) writableMap.putInt("sendAtDay", sendAtDay);
@@ -182,7 +367,7 @@ public class NotificationAttributes {
         if (repeatType != null) writableMap.putString("repeatType", repeatType);
         if (repeatTime != null) writableMap.putInt("repeatTime", repeatTime);
         if (repeatCount != null) writableMap.putInt("repeatCount", repeatCount);
-        if (endAt != null) writableMap.putString("endAt", Long.toString(endAt));
+        if (endAt != null) writableMap.putDouble("endAt", endAt);
 
         if (priority != null) writableMap.putInt("priority", priority);
         if (smallIcon != null) writableMap.putString("smallIcon", smallIcon);
@@ -193,7 +378,7 @@ public class NotificationAttributes {
         if (autoClear != null) writableMap.putBoolean("autoClear", autoClear);
         if (onlyAlertOnce != null) writableMap.putBoolean("onlyAlertOnce", onlyAlertOnce);
         if (tickerText != null) writableMap.putString("tickerText", tickerText);
-        if (when != null) writableMap.putString("when", Long.toString(when));
+        if (when != null) writableMap.putDouble("when", when);
         if (bigText != null) writableMap.putString("bigText", bigText);
         if (bigStyleImageBase64 != null) writableMap.putString("bigStyleImageBase64", bigStyleImageBase64);
         if (subText != null) writableMap.putString("subText", subText);
@@ -221,6 +406,9 @@ public class NotificationAttributes {
             writableMap.putMap("inboxStyle", inboxStyle);
         }
 
+        if (groupBy != null) writableMap.putString("groupBy", groupBy);
+        if (groupWindow != null) writableMap.putInt("groupWindow", groupWindow);
+
         return (ReadableMap) writableMap;
     }
 }
@@ -0,0 +1,205 @@
+package io.neson.react.notification;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+
+import android.util.Log;
+
+/**
+ * Process-wide, write-through cache of the persisted notification attributes.
+ *
+ * The store is loaded once, on first access, as binary records of which only
+ * the small schedule header is decoded. The full attributes of a notification
+ * are decoded the first time they are asked for, e.g. when it's shown, so
+ * deciding whether and when an alarm fires never reads the presentation
+ * fields. After that the cache is kept in sync by the Notification
+ * persistence methods, so lookups by id never touch the store again.
+ * Secondary indexes for queries are maintained along, see NotificationIndex.
+ */
+public class NotificationAttributesCache {
+    private static final Object lock = new Object();
+    private static SparseArray<Entry> entriesByID = null;
+    private static NotificationIndex index = null;
+
+    /**
+     * Get the cached attributes of a notification, null if it's not saved.
+     */
+    public static NotificationAttributes get(Context context, int id) {
+        synchronized (lock) {
+            Entry entry = load(context).get(id);
+            return entry == null ? null : entry.hydrate(id);
+        }
+    }
+
+    /**
+     * Get the schedule header of a notification, null if it's not saved.
+     * Only the fields of NotificationAttributesCodec.decodeHeader() are
+     * guaranteed to be set. It must be read only: use get() to change and
+     * save a notification.
+     */
+    public static NotificationAttributes getHeader(Context context, int id) {
+        synchronized (lock) {
+            Entry entry = load(context).get(id);
+            return entry == null ? null : entry.header;
+        }
+    }
+
+    /**
+     * Get the size of the saved record of a notification, 0 if it's not
+     * saved.
+     */
+    public static int getRecordSize(Context context, int id) {
+        synchronized (lock) {
+            Entry entry = load(context).get(id);
+            if (entry == null) return 0;
+
+            return entry.record != null ? entry.record.length : NotificationAttributesCodec.encode(entry.attributes).length;
+        }
+    }
+
+    /**
+     * Get the ids of the saved notifications matching a query, in order.
+     */
+    public static ArrayList<Integer> query(Context context, NotificationQuery query) {
+        synchronized (lock) {
+            load(context);
+            return index.query(query);
+        }
+    }
+
+    /**
+     * Get the ids of all saved notifications.
+     */
+    public static ArrayList<Integer> getIDs(Context context) {
+        synchronized (lock) {
+            SparseArray<Entry> entries = load(context);
+            ArrayList<Integer> ids = new ArrayList<Integer>(entries.size());
+
+            for (int i = 0; i < entries.size(); i++) {
+                ids.add(entries.keyAt(i));
+            }
+
+            return ids;
+        }
+    }
+
+    /**
+     * Record the attributes of a notification that has been saved.
+     */
+    public static void put(Context context, int id, NotificationAttributes attributes) {
+        synchronized (lock) {
+            load(context).put(id, new Entry(attributes));
+            index.put(id, attributes);
+        }
+    }
+
+    /**
+     * Forget a notification that has been deleted.
+     */
+    public static void remove(Context context, int id) {
+        synchronized (lock) {
+            load(context).remove(id);
+            index.remove(id);
+        }
+    }
+
+    /**
+     * Populate the cache from the store if not done yet. Must be called while
+     * holding the lock.
+     */
+    private static SparseArray<Entry> load(final Context context) {
+        if (entriesByID != null) return entriesByID;
+
+        SparseArray<byte[]> records = NotificationManager.getStore(context).loadAllRecords();
+        entriesByID = new SparseArray<Entry>(records.size());
+        index = new NotificationIndex(new NotificationIndex.FieldReader() {
+            @Override
+            public String readAction(int id) {
+                NotificationAttributes attributes = getQueryFields(id);
+                return attributes == null ? null : attributes.action;
+            }
+
+            @Override
+            public String readPayload(int id, String key) {
+                NotificationAttributes attributes = getQueryFields(id);
+                if (attributes == null || attributes.payload == null) return null;
+
+                try {
+                    return NotificationResources.getInstance(context).getPayload(attributes.payload).getString(key);
+                } catch (Exception e) {
+                    return null;
+                }
+            }
+        });
+
+        for (int i = 0; i < records.size(); i++) {
+            try {
+                Entry entry = new Entry(records.valueAt(i));
+                entriesByID.put(records.keyAt(i), entry);
+                index.put(records.keyAt(i), entry.header);
+            } catch (Exception e) {
+                Log.e("ReactSystemNotification", "NotificationAttributesCache: load Error: " + Log.getStackTraceString(e));
+            }
+        }
+
+        Log.i("ReactSystemNotification", "NotificationAttributesCache: Loaded " + entriesByID.size() + " notifications");
+
+        return entriesByID;
+    }
+
+    /**
+     * Get the fields queries filter on of a notification, null if it's not
+     * saved or they can't be read. Must be called while holding the lock.
+     */
+    private static NotificationAttributes getQueryFields(int id) {
+        Entry entry = entriesByID.get(id);
+        if (entry == null) return null;
+        if (entry.attributes != null) return entry.attributes;
+
+        try {
+            return NotificationAttributesCodec.decodeQueryFields(entry.record);
+        } catch (Exception e) {
+            Log.e("ReactSystemNotification", "NotificationAttributesCache: Cannot decode " + id + ": " + Log.getStackTraceString(e));
+            return null;
+        }
+    }
+
+    private static class Entry {
+        NotificationAttributes header;
+        NotificationAttributes attributes;
+        byte[] record;
+
+        Entry(byte[] record) {
+            this.header = NotificationAttributesCodec.decodeHeader(record);
+            this.record = record;
+        }
+
+        Entry(NotificationAttributes attributes) {
+            this.header = attributes;
+            this.attributes = attributes;
+        }
+
+        /**
+         * Decode the full attributes on first use. Must be called while
+         * holding the lock.
+         */
+        NotificationAttributes hydrate(int id) {
+            if (attributes == null) {
+                try {
+                    attributes = NotificationAttributesCodec.decode(record);
+                } catch (Exception e) {
+                    // Scheduling still works, the notification shows what it can
+                    Log.e("ReactSystemNotification", "NotificationAttributesCache: Cannot decode " + id + ": " + Log.getStackTraceString(e));
+                    attributes = header;
+                }
+
+                header = attributes;
+                record = null;
+            }
+
+            return attributes;
+        }
+    }
+}
@@ -0,0 +1,503 @@
+package io.neson.react.notification;
+
+import android.util.Base64;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+
+import com.google.gson.Gson;
+
+/**
+ * Compact binary codec for NotificationAttributes.
+ *
+ * A record is a version byte followed by tagged fields. Each field starts
+ * with a varint key made of its tag and wire type, so fields that a version
+ * of the codec doesn't know can be skipped when reading, and are kept and
+ * written back as-is. Null fields are not written at all.
+ *
+ * Tags must never be reused or renumbered, only new ones added.
+ */
+public class NotificationAttributesCodec {
+    public static final int VERSION = 1;
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_BYTES = 2;
+
+    private static final int TAG_ID = 1;
+    private static final int TAG_SUBJECT = 2;
+    private static final int TAG_MESSAGE = 3;
+    private static final int TAG_ACTION = 4;
+    private static final int TAG_PAYLOAD = 5;
+    private static final int TAG_DELAYED = 6;
+    private static final int TAG_DELAY = 7;
+    private static final int TAG_SCHEDULED = 8;
+    private static final int TAG_SEND_AT = 9;
+    private static final int TAG_SEND_AT_YEAR = 10;
+    private static final int TAG_SEND_AT_MONTH = 11;
+    private static final int TAG_SEND_AT_DAY = 12;
+    private static final int TAG_SEND_AT_WEEK_DAY = 13;
+    private static final int TAG_SEND_AT_HOUR = 14;
+    private static final int TAG_SEND_AT_MINUTE = 15;
+    private static final int TAG_REPEAT_EVERY = 16;
+    private static final int TAG_REPEAT_TYPE = 17;
+    private static final int TAG_REPEAT_TIME = 18;
+    private static final int TAG_REPEAT_COUNT = 19;
+    private static final int TAG_END_AT = 20;
+    private static final int TAG_PRIORITY = 21;
+    private static final int TAG_SMALL_ICON = 22;
+    private static final int TAG_LARGE_ICON = 23;
+    private static final int TAG_SOUND = 24;
+    private static final int TAG_VIBRATE = 25;
+    private static final int TAG_LIGHTS = 26;
+    private static final int TAG_AUTO_CLEAR = 27;
+    private static final int TAG_ONLY_ALERT_ONCE = 28;
+    private static final int TAG_TICKER_TEXT = 29;
+    private static final int TAG_WHEN = 30;
+    private static final int TAG_BIG_TEXT = 31;
+    private static final int TAG_BIG_STYLE_IMAGE_BASE64 = 32;
+    private static final int TAG_SUB_TEXT = 33;
+    private static final int TAG_PROGRESS = 34;
+    private static final int TAG_COLOR = 35;
+    private static final int TAG_NUMBER = 36;
+    private static final int TAG_CATEGORY = 37;
+    private static final int TAG_LOCAL_ONLY = 38;
+    private static final int TAG_INBOX_STYLE = 39;
+    private static final int TAG_INBOX_STYLE_BIG_CONTENT_TITLE = 40;
+    private static final int TAG_INBOX_STYLE_SUMMARY_TEXT = 41;
+    private static final int TAG_INBOX_STYLE_LINES = 42;
+    private static final int TAG_NEXT_FIRE_AT = 43;
+    private static final int TAG_GROUP_BY = 44;
+    private static final int TAG_GROUP_WINDOW = 45;
+    private static final int TAG_BIG_STYLE_IMAGE_REF = 46;
+
+    /**
+     * Encode the attributes into a binary record.
+     */
+    public static byte[] encode(NotificationAttributes a) {
+        Writer w = new Writer();
+
+        w.writeRaw(VERSION);
+
+        w.writeInt(TAG_ID, a.id);
+        w.writeString(TAG_SUBJECT, a.subject);
+        w.writeString(TAG_MESSAGE, a.message);
+        w.writeString(TAG_ACTION, a.action);
+        w.writeString(TAG_PAYLOAD, a.payload);
+
+        w.writeBoolean(TAG_DELAYED, a.delayed);
+        w.writeInt(TAG_DELAY, a.delay);
+
+        w.writeBoolean(TAG_SCHEDULED, a.scheduled);
+        w.writeLong(TAG_SEND_AT, a.sendAt);
+        w.writeInt(TAG_SEND_AT_YEAR, a.sendAtYear);
+        w.writeInt(TAG_SEND_AT_MONTH, a.sendAtMonth);
+        w.writeInt(TAG_SEND_AT_DAY, a.sendAtDay);
+        w.writeInt(TAG_SEND_AT_WEEK_DAY, a.sendAtWeekDay);
+        w.writeInt(TAG_SEND_AT_HOUR, a.sendAtHour);
+        w.writeInt(TAG_SEND_AT_MINUTE, a.sendAtMinute);
+
+        w.writeString(TAG_REPEAT_EVERY, a.repeatEvery);
+        w.writeString(TAG_REPEAT_TYPE, a.repeatType);
+        w.writeInt(TAG_REPEAT_TIME, a.repeatTime);
+        w.writeInt(TAG_REPEAT_COUNT, a.repeatCount);
+        w.writeLong(TAG_END_AT, a.endAt);
+
+        w.writeInt(TAG_PRIORITY, a.priority);
+        w.writeString(TAG_SMALL_ICON, a.smallIcon);
+        w.writeString(TAG_LARGE_ICON, a.largeIcon);
+        w.writeString(TAG_SOUND, a.sound);
+        w.writeString(TAG_VIBRATE, a.vibrate);
+        w.writeString(TAG_LIGHTS, a.lights);
+        w.writeBoolean(TAG_AUTO_CLEAR, a.autoClear);
+        w.writeBoolean(TAG_ONLY_ALERT_ONCE, a.onlyAlertOnce);
+        w.writeString(TAG_TICKER_TEXT, a.tickerText);
+        w.writeLong(TAG_WHEN, a.when);
+        w.writeString(TAG_BIG_TEXT, a.bigText);
+        w.writeString(TAG_BIG_STYLE_IMAGE_BASE64, a.bigStyleImageBase64);
+        w.writeString(TAG_SUB_TEXT, a.subText);
+        w.writeInt(TAG_PROGRESS, a.progress);
+        w.writeString(TAG_COLOR, a.color);
+        w.writeInt(TAG_NUMBER, a.number);
+        w.writeString(TAG_CATEGORY, a.category);
+        w.writeBoolean(TAG_LOCAL_ONLY, a.localOnly);
+
+        w.writeBoolean(TAG_INBOX_STYLE, a.inboxStyle);
+        w.writeString(TAG_INBOX_STYLE_BIG_CONTENT_TITLE, a.inboxStyleBigContentTitle);
+        w.writeString(TAG_INBOX_STYLE_SUMMARY_TEXT, a.inboxStyleSummaryText);
+        if (a.inboxStyleLines != null) {
+            for (String line : a.inboxStyleLines) w.writeString(TAG_INBOX_STYLE_LINES, line);
+        }
+
+        w.writeLong(TAG_NEXT_FIRE_AT, a.nextFireAt);
+
+        w.writeString(TAG_GROUP_BY, a.groupBy);
+        w.writeInt(TAG_GROUP_WINDOW, a.groupWindow);
+
+        w.writeString(TAG_BIG_STYLE_IMAGE_REF, a.bigStyleImageRef);
+
+        if (a.unknownFields != null) w.writeRaw(a.unknownFields);
+
+        return w.toByteArray();
+    }
+
+    /**
+     * Decode attributes from a binary record.
+     */
+    public static NotificationAttributes decode(byte[] bytes) {
+        Reader r = new Reader(bytes);
+        NotificationAttributes a = new NotificationAttributes();
+        ByteArrayOutputStream unknownFields = null;
+
+        r.readVersion();
+
+        while (r.hasMore()) {
+            int fieldStart = r.position;
+            long key = r.readVarint();
+            int tag = (int) (key >>> 3);
+            int wireType = (int) (key & 7);
+
+            switch (tag) {
+                case TAG_ID: a.id = r.readInt(); break;
+                case TAG_SUBJECT: a.subject = r.readString(); break;
+                case TAG_MESSAGE: a.message = r.readString(); break;
+                case TAG_ACTION: a.action = r.readString(); break;
+                case TAG_PAYLOAD: a.payload = r.readString(); break;
+
+                case TAG_DELAYED: a.delayed = r.readBoolean(); break;
+                case TAG_DELAY: a.delay = r.readInt(); break;
+
+                case TAG_SCHEDULED: a.scheduled = r.readBoolean(); break;
+                case TAG_SEND_AT: a.sendAt = r.readLong(); break;
+                case TAG_SEND_AT_YEAR: a.sendAtYear = r.readInt(); break;
+                case TAG_SEND_AT_MONTH: a.sendAtMonth = r.readInt(); break;
+                case TAG_SEND_AT_DAY: a.sendAtDay = r.readInt(); break;
+                case TAG_SEND_AT_WEEK_DAY: a.sendAtWeekDay = r.readInt(); break;
+                case TAG_SEND_AT_HOUR: a.sendAtHour = r.readInt(); break;
+                case TAG_SEND_AT_MINUTE: a.sendAtMinute = r.readInt(); break;
+
+                case TAG_REPEAT_EVERY: a.repeatEvery = r.readString(); break;
+                case TAG_REPEAT_TYPE: a.repeatType = r.readString(); break;
+                case TAG_REPEAT_TIME: a.repeatTime = r.readInt(); break;
+                case TAG_REPEAT_COUNT: a.repeatCount = r.readInt(); break;
+                case TAG_END_AT: a.endAt = r.readLong(); break;
+
+                case TAG_PRIORITY: a.priority = r.readInt(); break;
+                case TAG_SMALL_ICON: a.smallIcon = r.readString(); break;
+                case TAG_LARGE_ICON: a.largeIcon = r.readString(); break;
+                case TAG_SOUND: a.sound = r.readString(); break;
+                case TAG_VIBRATE: a.vibrate = r.readString(); break;
+                case TAG_LIGHTS: a.lights = r.readString(); break;
+                case TAG_AUTO_CLEAR: a.autoClear = r.readBoolean(); break;
+                case TAG_ONLY_ALERT_ONCE: a.onlyAlertOnce = r.readBoolean(); break;
+                case TAG_TICKER_TEXT: a.tickerText = r.readString(); break;
+                case TAG_WHEN: a.when = r.readLong(); break;
+                case TAG_BIG_TEXT: a.bigText = r.readString(); break;
+                case TAG_BIG_STYLE_IMAGE_BASE64: a.bigStyleImageBase64 = r.readString(); break;
+                case TAG_SUB_TEXT: a.subText = r.readString(); break;
+                case TAG_PROGRESS: a.progress = r.readInt(); break;
+                case TAG_COLOR: a.color = r.readString(); break;
+                case TAG_NUMBER: a.number = r.readInt(); break;
+                case TAG_CATEGORY: a.category = r.readString(); break;
+                case TAG_LOCAL_ONLY: a.localOnly = r.readBoolean(); break;
+
+                case TAG_INBOX_STYLE: a.inboxStyle = r.readBoolean(); break;
+                case TAG_INBOX_STYLE_BIG_CONTENT_TITLE: a.inboxStyleBigContentTitle = r.readString(); break;
+                case TAG_INBOX_STYLE_SUMMARY_TEXT: a.inboxStyleSummaryText = r.readString(); break;
+                case TAG_INBOX_STYLE_LINES:
+                    if (a.inboxStyleLines == null) a.inboxStyleLines = new ArrayList<String>();
+                    a.inboxStyleLines.add(r.readString());
+                    break;
+
+                case TAG_NEXT_FIRE_AT: a.nextFireAt = r.readLong(); break;
+
+                case TAG_GROUP_BY: a.groupBy = r.readString(); break;
+                case TAG_GROUP_WINDOW: a.groupWindow = r.readInt(); break;
+
+                case TAG_BIG_STYLE_IMAGE_REF: a.bigStyleImageRef = r.readString(); break;
+
+                default:
+                    // A field written by a newer version, keep it around
+                    r.skip(wireType);
+                    if (unknownFields == null) unknownFields = new ByteArrayOutputStream();
+                    unknownFields.write(bytes, fieldStart, r.position - fieldStart);
+                    break;
+            }
+        }
+
+        if (a.inboxStyle == null) a.inboxStyle = false;
+        if (unknownFields != null) a.unknownFields = unknownFields.toByteArray();
+
+        return a;
+    }
+
+    /**
+     * Decode only the schedule header of a binary record: the id, the
+     * scheduling fields and the big picture reference. The other fields are
+     * skipped without being read, so it stays cheap however large they are.
+     * The result must never be saved, it would lose the rest.
+     */
+    public static NotificationAttributes decodeHeader(byte[] bytes) {
+        Reader r = new Reader(bytes);
+        NotificationAttributes a = new NotificationAttributes();
+
+        r.readVersion();
+
+        while (r.hasMore()) {
+            long key = r.readVarint();
+            int tag = (int) (key >>> 3);
+            int wireType = (int) (key & 7);
+
+            switch (tag) {
+                case TAG_ID: a.id = r.readInt(); break;
+
+                case TAG_DELAYED: a.delayed = r.readBoolean(); break;
+                case TAG_DELAY: a.delay = r.readInt(); break;
+
+                case TAG_SCHEDULED: a.scheduled = r.readBoolean(); break;
+                case TAG_SEND_AT: a.sendAt = r.readLong(); break;
+                case TAG_SEND_AT_YEAR: a.sendAtYear = r.readInt(); break;
+                case TAG_SEND_AT_MONTH: a.sendAtMonth = r.readInt(); break;
+                case TAG_SEND_AT_DAY: a.sendAtDay = r.readInt(); break;
+                case TAG_SEND_AT_WEEK_DAY: a.sendAtWeekDay = r.readInt(); break;
+                case TAG_SEND_AT_HOUR: a.sendAtHour = r.readInt(); break;
+                case TAG_SEND_AT_MINUTE: a.sendAtMinute = r.readInt(); break;
+
+                case TAG_REPEAT_EVERY: a.repeatEvery = r.readString(); break;
+                case TAG_REPEAT_TYPE: a.repeatType = r.readString(); break;
+                case TAG_REPEAT_TIME: a.repeatTime = r.readInt(); break;
+                case TAG_REPEAT_COUNT: a.repeatCount = r.readInt(); break;
+                case TAG_END_AT: a.endAt = r.readLong(); break;
+
+                case TAG_NEXT_FIRE_AT: a.nextFireAt = r.readLong(); break;
+
+                case TAG_BIG_STYLE_IMAGE_REF: a.bigStyleImageRef = r.readString(); break;
+
+                default: r.skip(wireType); break;
+            }
+        }
+
+        a.inboxStyle = false;
+
+        return a;
+    }
+
+    /**
+     * Decode only the fields queries filter on from a binary record: the id,
+     * the action and the payload. Like decodeHeader(), the result must never
+     * be saved.
+     */
+    public static NotificationAttributes decodeQueryFields(byte[] bytes) {
+        Reader r = new Reader(bytes);
+        NotificationAttributes a = new NotificationAttributes();
+
+        r.readVersion();
+
+        while (r.hasMore()) {
+            long key = r.readVarint();
+            int tag = (int) (key >>> 3);
+            int wireType = (int) (key & 7);
+
+            switch (tag) {
+                case TAG_ID: a.id = r.readInt(); break;
+                case TAG_ACTION: a.action = r.readString(); break;
+                case TAG_PAYLOAD: a.payload = r.readString(); break;
+                default: r.skip(wireType); break;
+            }
+        }
+
+        a.inboxStyle = false;
+
+        return a;
+    }
+
+    /**
+     * Encode the attributes into a string that can be stored in the shared
+     * preferences.
+     */
+    public static String encodeToString(NotificationAttributes attributes) {
+        return recordToString(encode(attributes));
+    }
+
+    /**
+     * Get the string stored in the shared preferences for a binary record.
+     */
+    public static String recordToString(byte[] record) {
+        return Base64.encodeToString(record, Base64.NO_WRAP);
+    }
+
+    /**
+     * Get the binary record of attributes stored in the shared preferences,
+     * either as a binary record or in the legacy JSON format.
+     */
+    public static byte[] toRecord(String string) {
+        if (isLegacyJSON(string)) return encode(decodeFromString(string));
+
+        return Base64.decode(string, Base64.NO_WRAP);
+    }
+
+    /**
+     * Decode attributes stored in the shared preferences, either as a binary
+     * record or in the legacy JSON format.
+     */
+    public static NotificationAttributes decodeFromString(String string) {
+        if (isLegacyJSON(string)) {
+            NotificationAttributes attributes = new Gson().fromJson(string, NotificationAttributes.class);
+            if (attributes.inboxStyle == null) attributes.inboxStyle = false;
+
+            return attributes;
+        }
+
+        return decode(Base64.decode(string, Base64.NO_WRAP));
+    }
+
+    /**
+     * Whether a stored string is in the legacy JSON format. Base 64 never
+     * starts with a brace, so this is unambiguous.
+     */
+    public static boolean isLegacyJSON(String string) {
+        return string.startsWith("{");
+    }
+
+    private static class Writer {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+
+        void writeRaw(int b) {
+            out.write(b);
+        }
+
+        void writeRaw(byte[] bytes) {
+            out.write(bytes, 0, bytes.length);
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        void writeKey(int tag, int wireType) {
+            writeVarint((tag << 3) | wireType);
+        }
+
+        void writeLong(int tag, Long value) {
+            if (value == null) return;
+            writeKey(tag, WIRE_VARINT);
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeInt(int tag, Integer value) {
+            if (value == null) return;
+            writeLong(tag, (long) value);
+        }
+
+        void writeBoolean(int tag, Boolean value) {
+            if (value == null) return;
+            writeKey(tag, WIRE_VARINT);
+            writeVarint(value ? 1 : 0);
+        }
+
+        void writeString(int tag, String value) {
+            if (value == null) return;
+
+            byte[] bytes;
+            try {
+                bytes = value.getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException(e);
+            }
+
+            writeKey(tag, WIRE_BYTES);
+            writeVarint(bytes.length);
+            writeRaw(bytes);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+
+    private static class Reader {
+        private final byte[] bytes;
+        private int position = 0;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        boolean hasMore() {
+            return position < bytes.length;
+        }
+
+        int readByte() {
+            if (position >= bytes.length) throw new IllegalArgumentException("Truncated notification record");
+            return bytes[position++] & 0xFF;
+        }
+
+        /**
+         * Read the version byte. Only changes that new fields can't express
+         * bump the version, so a later one can't be read.
+         */
+        void readVersion() {
+            int version = readByte();
+            if (version < 1 || version > VERSION) throw new IllegalArgumentException("Unsupported notification record version: " + version);
+        }
+
+        long readVarint() {
+            long value = 0;
+
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+
+            throw new IllegalArgumentException("Malformed varint in notification record");
+        }
+
+        long readLong() {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int readInt() {
+            return (int) readLong();
+        }
+
+        boolean readBoolean() {
+            return readVarint() != 0;
+        }
+
+        String readString() {
+            int length = (int) readVarint();
+            if (length < 0 || position + length > bytes.length) throw new IllegalArgumentException("Truncated notification record");
+
+            try {
+                String value = new String(bytes, position, length, "UTF-8");
+                position += length;
+                return value;
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        void skip(int wireType) {
+            switch (wireType) {
+                case WIRE_VARINT:
+                    readVarint();
+                    break;
+
+                case WIRE_BYTES:
+                    int length = (int) readVarint();
+                    if (length < 0 || position + length > bytes.length) throw new IllegalArgumentException("Truncated notification record");
+                    position += length;
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("Unknown wire type in notification record: " + wireType);
+            }
+        }
+    }
+}
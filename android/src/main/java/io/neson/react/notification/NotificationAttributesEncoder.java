@@ -0,0 +1,289 @@
+package io.neson.react.notification;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TimeZone;
+
+/**
+ * Native port of the encodeNativeNotification function in index.android.js.
+ *
+ * Turns a raw notification JSON string (e.g. from a GCM message) into the same
+ * attribute map the JS side passes into the native module, so push messages
+ * can be handled without evaluating JavaScript. Keep the two in sync.
+ */
+public class NotificationAttributesEncoder {
+
+    private static final String[] ISO_DATE_FORMATS = {
+        "yyyy-MM-dd'T'HH:mm:ss.SSSZ",
+        "yyyy-MM-dd'T'HH:mm:ssZ",
+        "yyyy-MM-dd'T'HH:mmZ",
+        "yyyy-MM-dd'T'HH:mm:ss.SSS",
+        "yyyy-MM-dd'T'HH:mm:ss",
+        "yyyy-MM-dd'T'HH:mm"
+    };
+
+    /**
+     * Encode the notification JSON string into a native attribute map.
+     */
+    public static Map<String, Object> encode(String notificationString) {
+        JsonObject e = new JsonParser().parse(notificationString).getAsJsonObject();
+
+        // Set defaults
+        if (!isTruthy(e.get("smallIcon"))) e.addProperty("smallIcon", "ic_launcher");
+        if (!isTruthy(e.get("id"))) e.addProperty("id", (int) (Math.random() * 100000));
+        if (!isTruthy(e.get("action"))) e.addProperty("action", "DEFAULT");
+        if (!isTruthy(e.get("payload"))) e.add("payload", new JsonObject());
+        if (!e.has("autoClear")) e.addProperty("autoClear", true);
+        if (!e.has("tickerText")) {
+            if (isTruthy(e.get("subject"))) {
+                e.addProperty("tickerText", toJsString(e.get("subject")) + ": " + toJsString(e.get("message")));
+            } else if (e.has("message")) {
+                e.add("tickerText", e.get("message"));
+            }
+        }
+
+        if (!e.has("priority")) e.addProperty("priority", 1);
+        if (!e.has("sound")) e.addProperty("sound", "default");
+        if (!e.has("vibrate")) e.addProperty("vibrate", "default");
+        if (!e.has("lights")) e.addProperty("lights", "default");
+
+        e.addProperty("delayed", e.has("delay"));
+        e.addProperty("scheduled", e.has("sendAt"));
+
+        // Ensure dates are timestamps
+        Long sendAt = isTruthy(e.get("sendAt")) ? toTime(e.get("sendAt")) : null;
+        Long endAt = isTruthy(e.get("endAt")) ? toTime(e.get("endAt")) : null;
+        Long when = isTruthy(e.get("when")) ? toTime(e.get("when")) : null;
+
+        // Unfold sendAt
+        if (e.has("sendAt")) {
+            if (sendAt == null) throw new IllegalArgumentException("Invalid sendAt: " + e.get("sendAt"));
+
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(sendAt);
+            e.addProperty("sendAtYear", calendar.get(Calendar.YEAR));
+            e.addProperty("sendAtMonth", calendar.get(Calendar.MONTH) + 1);
+            e.addProperty("sendAtDay", calendar.get(Calendar.DAY_OF_MONTH));
+            e.addProperty("sendAtWeekDay", calendar.get(Calendar.DAY_OF_WEEK) - 1);
+            e.addProperty("sendAtHour", calendar.get(Calendar.HOUR_OF_DAY));
+            e.addProperty("sendAtMinute", calendar.get(Calendar.MINUTE));
+        }
+
+        // Prepare scheduled notifications
+        if (sendAt != null) {
+            JsonElement repeatEvery = e.get("repeatEvery");
+            boolean repeatEveryIsNumber = isNumber(repeatEvery);
+            boolean repeatEveryIsString = isString(repeatEvery);
+
+            // Set repeatType for custom repeat time
+            if (repeatEveryIsNumber) {
+                e.addProperty("repeatType", "time");
+                e.add("repeatTime", repeatEvery);
+            } else if (repeatEveryIsString) {
+                e.add("repeatType", repeatEvery);
+            }
+
+            // Native module only recognizes the endAt attribute, so we need to
+            // convert repeatCount to the endAt time base on repeatEvery
+            if (isTruthy(e.get("repeatCount"))) {
+                double repeatCount = toNumber(e.get("repeatCount"));
+
+                if (repeatEveryIsNumber) {
+                    double every = repeatEvery.getAsDouble();
+                    endAt = (long) (sendAt + every * repeatCount + every / 2);
+
+                } else if (repeatEveryIsString) {
+                    switch (repeatEvery.getAsString()) {
+                        case "minute":
+                            endAt = (long) (sendAt + 60000d * repeatCount + 1000 * 30);
+                            break;
+
+                        case "hour":
+                            endAt = (long) (sendAt + 60000d * 60 * repeatCount + 60000 * 30);
+                            break;
+
+                        case "halfDay":
+                            endAt = (long) (sendAt + 60000d * 60 * 12 * repeatCount + 60000 * 60 * 6);
+                            break;
+
+                        case "day":
+                            endAt = (long) (sendAt + 60000d * 60 * 24 * repeatCount + 60000 * 60 * 12);
+                            break;
+
+                        case "week":
+                            endAt = (long) (sendAt + 60000d * 60 * 24 * 7 * repeatCount + 60000 * 60 * 24 * 3);
+                            break;
+
+                        case "month":
+                            endAt = (long) (sendAt + 60000d * 60 * 24 * 30 * repeatCount + 60000L * 60 * 24 * 15);
+                            break;
+
+                        case "year":
+                            endAt = (long) (sendAt + 60000d * 60 * 24 * 365 * repeatCount + 60000L * 60 * 24 * 100);
+                            break;
+                    }
+                }
+            }
+        }
+
+        // Timestamps stay numbers, as the JS side does
+        if (sendAt != null && sendAt != 0) e.addProperty("sendAt", sendAt);
+        if (endAt != null && endAt != 0) e.addProperty("endAt", endAt);
+        if (when != null && when != 0) e.addProperty("when", when);
+        if (isTruthy(e.get("repeatEvery"))) e.addProperty("repeatEvery", toJsString(e.get("repeatEvery")));
+
+        // Convert float into integer
+        if (isTruthy(e.get("progress"))) e.addProperty("progress", toNumber(e.get("progress")) * 1000);
+
+        // Stringify the payload
+        e.addProperty("payload", e.get("payload").toString());
+
+        return toMap(e);
+    }
+
+    /**
+     * Convert the encoded JSON object into a plain map, keeping nested
+     * objects and arrays as JSON elements.
+     */
+    private static Map<String, Object> toMap(JsonObject object) {
+        Map<String, Object> map = new HashMap<>();
+
+        for (Entry<String, JsonElement> entry : object.entrySet()) {
+            JsonElement value = entry.getValue();
+
+            if (value.isJsonNull()) continue;
+
+            if (value.isJsonPrimitive()) {
+                JsonPrimitive primitive = value.getAsJsonPrimitive();
+
+                if (primitive.isBoolean()) {
+                    map.put(entry.getKey(), primitive.getAsBoolean());
+                } else if (primitive.isNumber()) {
+                    map.put(entry.getKey(), primitive.getAsDouble());
+                } else {
+                    map.put(entry.getKey(), primitive.getAsString());
+                }
+
+            } else {
+                map.put(entry.getKey(), value);
+            }
+        }
+
+        return map;
+    }
+
+    private static boolean isNumber(JsonElement value) {
+        return value != null && value.isJsonPrimitive() && value.getAsJsonPrimitive().isNumber();
+    }
+
+    private static boolean isString(JsonElement value) {
+        return value != null && value.isJsonPrimitive() && value.getAsJsonPrimitive().isString();
+    }
+
+    /**
+     * JavaScript truthiness of a JSON value.
+     */
+    private static boolean isTruthy(JsonElement value) {
+        if (value == null || value.isJsonNull()) return false;
+        if (!value.isJsonPrimitive()) return true;
+
+        JsonPrimitive primitive = value.getAsJsonPrimitive();
+
+        if (primitive.isBoolean()) return primitive.getAsBoolean();
+        if (primitive.isNumber()) {
+            double number = primitive.getAsDouble();
+            return number != 0 && !Double.isNaN(number);
+        }
+
+        return !primitive.getAsString().isEmpty();
+    }
+
+    /**
+     * JavaScript number coercion of a JSON value.
+     */
+    private static double toNumber(JsonElement value) {
+        if (isNumber(value)) return value.getAsDouble();
+
+        try {
+            return Double.parseDouble(value.getAsString().trim());
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * JavaScript string coercion of a JSON value.
+     */
+    private static String toJsString(JsonElement value) {
+        if (value == null) return "undefined";
+        if (value.isJsonNull()) return "null";
+        if (!value.isJsonPrimitive()) return value.isJsonArray() ? value.toString() : "[object Object]";
+
+        if (isNumber(value)) {
+            double number = value.getAsDouble();
+            if (number == Math.rint(number) && Math.abs(number) < 1e21) return Long.toString((long) number);
+            return Double.toString(number);
+        }
+
+        return value.getAsString();
+    }
+
+    /**
+     * Equivalent of `new Date(value).getTime()` for numbers and ISO 8601 strings.
+     */
+    private static long toTime(JsonElement value) {
+        if (isNumber(value)) return (long) value.getAsDouble();
+
+        if (isString(value)) {
+            String date = value.getAsString().trim();
+
+            // A date-only form is treated as UTC by JavaScript
+            if (date.length() == 10) {
+                return parseDate(date, "yyyy-MM-dd", TimeZone.getTimeZone("UTC"));
+            }
+
+            // SimpleDateFormat only understands RFC 822 time zones
+            if (date.endsWith("Z")) {
+                date = date.substring(0, date.length() - 1) + "+0000";
+            } else if (date.matches(".*T.*[+-]\\d\\d:\\d\\d$")) {
+                date = date.substring(0, date.length() - 3) + date.substring(date.length() - 2);
+            }
+
+            for (String format : ISO_DATE_FORMATS) {
+                try {
+                    return parseDate(date, format, TimeZone.getDefault());
+                } catch (IllegalArgumentException e) {
+                    // Try the next format
+                }
+            }
+        }
+
+        throw new IllegalArgumentException("Invalid date: " + value);
+    }
+
+    private static long parseDate(String date, String format, TimeZone timeZone) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat(format, Locale.US);
+        dateFormat.setTimeZone(timeZone);
+        dateFormat.setLenient(false);
+
+        ParsePosition position = new ParsePosition(0);
+        Date parsed = dateFormat.parse(date, position);
+
+        if (parsed == null || position.getIndex() != date.length()) {
+            throw new IllegalArgumentException("Invalid date: " + date);
+        }
+
+        return parsed.getTime();
+    }
+}
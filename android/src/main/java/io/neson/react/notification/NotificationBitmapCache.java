@@ -0,0 +1,428 @@
+package io.neson.react.notification;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.util.Log;
+
+/**
+ * Two-tier cache for notification images.
+ *
+ * Remote large icons are kept in a byte-bounded memory LRU and in a disk cache
+ * under the app cache dir, keyed by URL. Disk entries are revalidated with
+ * their ETag / Last-Modified headers, and images are downsampled to the
+ * system large icon size before being cached. Big pictures are decoded
+ * streaming, downsampled to the big picture size, and kept in memory only,
+ * keyed by the hash of their content.
+ */
+public class NotificationBitmapCache {
+    private static final String DIRECTORY_NAME = "notification-images";
+    private static final long MAX_DISK_SIZE = 10 * 1024 * 1024;
+    private static final int MAX_MEMORY_SIZE = 8 * 1024 * 1024;
+
+    // Height of the big picture slot of the expanded notification
+    private static final int BIG_PICTURE_HEIGHT_DP = 256;
+
+    // Memory entries younger than this are used without revalidation
+    private static final long FRESHNESS_LIFETIME = 10 * 60 * 1000;
+
+    private static NotificationBitmapCache instance = null;
+
+    private final Context context;
+    private final File directory;
+    private final int largeIconWidth;
+    private final int largeIconHeight;
+    private final int bigPictureWidth;
+    private final int bigPictureHeight;
+    private final LruCache<String, Entry> memoryCache;
+    private Bitmap defaultLargeIcon = null;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Get the process-wide cache.
+     */
+    public static synchronized NotificationBitmapCache getInstance(Context context) {
+        if (instance == null) instance = new NotificationBitmapCache(context.getApplicationContext());
+
+        return instance;
+    }
+
+    private NotificationBitmapCache(Context context) {
+        this.context = context;
+        this.directory = new File(context.getCacheDir(), DIRECTORY_NAME);
+
+        Resources resources = context.getResources();
+        this.largeIconWidth = resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width);
+        this.largeIconHeight = resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height);
+        this.bigPictureWidth = resources.getDisplayMetrics().widthPixels;
+        this.bigPictureHeight = Math.round(BIG_PICTURE_HEIGHT_DP * resources.getDisplayMetrics().density);
+
+        int maxMemorySize = (int) Math.min(Runtime.getRuntime().maxMemory() / 16, MAX_MEMORY_SIZE);
+        this.memoryCache = new LruCache<String, Entry>(maxMemorySize) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return entry.bitmap.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Entry oldEntry, Entry newEntry) {
+                if (evicted) evictions.incrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * Get the large icon at an URL, from the cache or the network.
+     */
+    public Bitmap getLargeIcon(String url) throws Exception {
+        String key = "url:" + url;
+        Entry entry = memoryCache.get(key);
+
+        if (entry != null && System.currentTimeMillis() - entry.validatedAt < FRESHNESS_LIFETIME) {
+            memoryHits.incrementAndGet();
+            return entry.bitmap;
+        }
+
+        String hash = sha1(url.getBytes("UTF-8"));
+        File imageFile = new File(directory, hash);
+        File metaFile = new File(directory, hash + ".meta");
+        String[] meta = imageFile.exists() ? readMeta(metaFile) : null;
+
+        HttpURLConnection connection;
+        long startTime = NotificationMetrics.start();
+
+        try {
+            connection = NotificationImageLoader.openConnection(url);
+        } catch (Exception e) {
+            NotificationMetrics.increment(NotificationMetrics.IMAGE_FETCH_ERRORS, 1);
+
+            // Offline, a stale copy is better than none
+            Bitmap stale = entry != null ? entry.bitmap : (meta != null ? decodeFile(imageFile) : null);
+            if (stale != null) return stale;
+            throw e;
+        }
+
+        try {
+            if (meta != null) {
+                if (meta[0].length() > 0) connection.addRequestProperty("If-None-Match", meta[0]);
+                if (meta[1].length() > 0) connection.addRequestProperty("If-Modified-Since", meta[1]);
+            }
+
+            if (meta != null && connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                revalidations.incrementAndGet();
+
+                Bitmap bitmap = entry != null ? entry.bitmap : decodeFile(imageFile);
+                if (bitmap != null) {
+                    if (entry == null) diskHits.incrementAndGet();
+                    else memoryHits.incrementAndGet();
+
+                    imageFile.setLastModified(System.currentTimeMillis());
+                    memoryCache.put(key, new Entry(bitmap));
+                    return bitmap;
+                }
+            }
+
+            misses.incrementAndGet();
+
+            InputStream in = connection.getInputStream();
+            byte[] bytes;
+            try {
+                bytes = readFully(in);
+            } finally {
+                in.close();
+            }
+
+            Bitmap bitmap = decodeScaled(bytes, largeIconWidth, largeIconHeight);
+            if (bitmap == null) return null;
+
+            memoryCache.put(key, new Entry(bitmap));
+            writeToDisk(imageFile, metaFile, bitmap, connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+
+            return bitmap;
+
+        } catch (Exception e) {
+            NotificationMetrics.increment(NotificationMetrics.IMAGE_FETCH_ERRORS, 1);
+            throw e;
+
+        } finally {
+            connection.disconnect();
+            NotificationMetrics.record(NotificationMetrics.IMAGE_FETCH, startTime);
+        }
+    }
+
+    /**
+     * Get a decoded big picture from its base 64 content.
+     */
+    public Bitmap getBigPicture(final String base64) throws Exception {
+        return getBigPicture("sha1:" + sha1(base64), new Source() {
+            @Override
+            public InputStream open() {
+                return NotificationImageStore.openBase64(base64);
+            }
+        });
+    }
+
+    /**
+     * Get a decoded big picture from NotificationImageStore.
+     */
+    public Bitmap getStoredBigPicture(String ref) throws Exception {
+        final File file = NotificationImageStore.getInstance(context).getFile(ref);
+
+        return getBigPicture("file:" + ref, new Source() {
+            @Override
+            public InputStream open() throws IOException {
+                return new FileInputStream(file);
+            }
+        });
+    }
+
+    private Bitmap getBigPicture(String key, Source source) throws IOException {
+        Entry entry = memoryCache.get(key);
+
+        if (entry != null) {
+            memoryHits.incrementAndGet();
+            return entry.bitmap;
+        }
+
+        misses.incrementAndGet();
+
+        // Cropped to the slot by the system, so downsample only
+        Bitmap bitmap = decodeSampled(source, bigPictureWidth, bigPictureHeight);
+        if (bitmap != null) memoryCache.put(key, new Entry(bitmap));
+
+        return bitmap;
+    }
+
+    /**
+     * Get the app icon used when a notification has no large icon.
+     */
+    public synchronized Bitmap getDefaultLargeIcon() {
+        if (defaultLargeIcon == null) {
+            int largeIconResId = NotificationResources.getInstance(context).getIdentifier("ic_launcher", "mipmap");
+            defaultLargeIcon = BitmapFactory.decodeResource(context.getResources(), largeIconResId);
+        }
+
+        return defaultLargeIcon;
+    }
+
+    /**
+     * Hit, miss and eviction counters and the current sizes of the cache.
+     */
+    public long[] getStats() {
+        return new long[] {
+            memoryHits.get(),
+            diskHits.get(),
+            misses.get(),
+            revalidations.get(),
+            evictions.get(),
+            memoryCache.size(),
+            memoryCache.maxSize(),
+            getDiskSize()
+        };
+    }
+
+    private Bitmap decodeScaled(final byte[] bytes, int width, int height) throws IOException {
+        Bitmap bitmap = decodeSampled(new Source() {
+            @Override
+            public InputStream open() {
+                return new ByteArrayInputStream(bytes);
+            }
+        }, width, height);
+
+        if (bitmap != null && (bitmap.getWidth() > width || bitmap.getHeight() > height)) {
+            float scale = Math.min((float) width / bitmap.getWidth(), (float) height / bitmap.getHeight());
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(bitmap.getWidth() * scale)), Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+            if (scaled != bitmap) bitmap.recycle();
+            bitmap = scaled;
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Decode an image with the largest power of two sample size that keeps
+     * it at least as large as the given size, reading it twice: once for its
+     * bounds, once for its pixels.
+     */
+    private static Bitmap decodeSampled(Source source, int width, int height) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeStream(source, options);
+
+        options.inSampleSize = 1;
+        while (options.outWidth / (options.inSampleSize * 2) >= width &&
+               options.outHeight / (options.inSampleSize * 2) >= height) {
+            options.inSampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+
+        return decodeStream(source, options);
+    }
+
+    private static Bitmap decodeStream(Source source, BitmapFactory.Options options) throws IOException {
+        InputStream in = source.open();
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+    }
+
+    private Bitmap decodeFile(File imageFile) {
+        return BitmapFactory.decodeFile(imageFile.getPath());
+    }
+
+    private String[] readMeta(File metaFile) {
+        try {
+            InputStream in = new FileInputStream(metaFile);
+            try {
+                String[] meta = new String(readFully(in), "UTF-8").split("\n", -1);
+                return meta.length >= 2 ? meta : null;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private synchronized void writeToDisk(File imageFile, File metaFile, Bitmap bitmap, String etag, String lastModified) {
+        if (!directory.exists() && !directory.mkdirs()) return;
+
+        try {
+            File tmpFile = new File(directory, imageFile.getName() + ".tmp");
+            OutputStream out = new FileOutputStream(tmpFile);
+            try {
+                bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+            } finally {
+                out.close();
+            }
+
+            String meta = (etag == null ? "" : etag) + "\n" + (lastModified == null ? "" : lastModified);
+            out = new FileOutputStream(metaFile);
+            try {
+                out.write(meta.getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+
+            if (!tmpFile.renameTo(imageFile)) tmpFile.delete();
+
+            trimDisk();
+
+        } catch (IOException e) {
+            Log.e("ReactSystemNotification", "NotificationBitmapCache: writeToDisk Error: " + Log.getStackTraceString(e));
+        }
+    }
+
+    /**
+     * Delete the least recently used images until the disk cache fits.
+     */
+    private void trimDisk() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+
+        long size = 0;
+        for (File file : files) size += file.length();
+        if (size <= MAX_DISK_SIZE) return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+
+        for (File file : files) {
+            if (size <= MAX_DISK_SIZE) break;
+            if (file.getName().endsWith(".meta")) continue;
+
+            File metaFile = new File(directory, file.getName() + ".meta");
+            size -= file.length() + metaFile.length();
+            file.delete();
+            metaFile.delete();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private long getDiskSize() {
+        File[] files = directory.listFiles();
+        if (files == null) return 0;
+
+        long size = 0;
+        for (File file : files) size += file.length();
+        return size;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+
+        return out.toByteArray();
+    }
+
+    static String sha1(byte[] bytes) throws Exception {
+        return NotificationImageStore.toHex(MessageDigest.getInstance("SHA-1").digest(bytes));
+    }
+
+    /**
+     * Hash of an ASCII string, without copying it.
+     */
+    private static String sha1(String ascii) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        byte[] buffer = new byte[8192];
+
+        for (int start = 0; start < ascii.length(); start += buffer.length) {
+            int count = Math.min(buffer.length, ascii.length() - start);
+            for (int i = 0; i < count; i++) buffer[i] = (byte) ascii.charAt(start + i);
+            digest.update(buffer, 0, count);
+        }
+
+        return NotificationImageStore.toHex(digest.digest());
+    }
+
+    /**
+     * Opens an image, each time from the start.
+     */
+    private interface Source {
+        InputStream open() throws IOException;
+    }
+
+    private static class Entry {
+        final Bitmap bitmap;
+        final long validatedAt;
+
+        Entry(Bitmap bitmap) {
+            this.bitmap = bitmap;
+            this.validatedAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package io.neson.react.notification;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.util.Log;
+
+/**
+ * Stream of the changes to the notifications, for JS to mirror them without
+ * polling.
+ *
+ * Changes are coalesced per notification id and handed to the listener in
+ * batches, at most one every FLUSH_INTERVAL: a burst of changes to the same
+ * notification becomes its latest state (created then updated is created,
+ * created then deleted is nothing), and a burst over many notifications a
+ * handful of batches. Nothing is recorded while there is no listener, the
+ * module only sets one while JS listens.
+ */
+public class NotificationChangeFeed {
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String FIRED = "fired";
+    public static final String EXPIRED = "expired";
+    public static final String DELETED = "deleted";
+    public static final String CLEARED = "cleared";
+    public static final String CLEARED_ALL = "clearedAll";
+
+    public static final int FLUSH_INTERVAL = 100;
+
+    private static final Object lock = new Object();
+    private static final LinkedHashMap<Integer, Change> pending = new LinkedHashMap<Integer, Change>();
+    private static boolean pendingClearAll = false;
+    private static boolean flushScheduled = false;
+    private static Listener listener = null;
+    private static Handler handler = null;
+
+    /**
+     * Receives the batches of changes, on the feed's background thread.
+     */
+    public interface Listener {
+        void onChanges(List<Event> events);
+    }
+
+    /**
+     * A change to a notification. `attributes` is set for created and
+     * updated, a copy taken at the time of the change; `nextFireAt` for fired
+     * when the notification repeats; `id` is null for clearedAll.
+     */
+    public static class Event {
+        public final String type;
+        public final Integer id;
+        public final NotificationAttributes attributes;
+        public final Long nextFireAt;
+
+        Event(String type, Integer id, NotificationAttributes attributes, Long nextFireAt) {
+            this.type = type;
+            this.id = id;
+            this.attributes = attributes;
+            this.nextFireAt = nextFireAt;
+        }
+    }
+
+    /**
+     * Set the listener of the changes, null to stop recording them. Changes
+     * not flushed yet go to the new listener.
+     */
+    public static void setListener(Listener changeListener) {
+        synchronized (lock) {
+            listener = changeListener;
+
+            if (listener == null) {
+                pending.clear();
+                pendingClearAll = false;
+            }
+        }
+    }
+
+    /**
+     * Stop recording the changes, if the listener is still the given one.
+     */
+    public static void removeListener(Listener changeListener) {
+        synchronized (lock) {
+            if (listener == changeListener) setListener(null);
+        }
+    }
+
+    /**
+     * A notification has been saved for the first time.
+     */
+    public static void created(int id, NotificationAttributes attributes) {
+        setState(id, CREATED, attributes);
+    }
+
+    /**
+     * A saved notification has been changed.
+     */
+    public static void updated(int id, NotificationAttributes attributes) {
+        setState(id, UPDATED, attributes);
+    }
+
+    /**
+     * A saved notification has been deleted.
+     */
+    public static void deleted(int id) {
+        setState(id, DELETED, null);
+    }
+
+    /**
+     * A saved notification has been deleted because it's out-dated.
+     */
+    public static void expired(int id) {
+        setState(id, EXPIRED, null);
+    }
+
+    /**
+     * A notification has been shown. If it repeats, nextFireAt is its next
+     * occurrence.
+     */
+    public static void fired(int id, Long nextFireAt) {
+        synchronized (lock) {
+            Change change = getChange(id);
+            if (change == null) return;
+
+            change.fired = true;
+            change.nextFireAt = nextFireAt;
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * A notification has been cleared from the status bar.
+     */
+    public static void cleared(int id) {
+        synchronized (lock) {
+            Change change = getChange(id);
+            if (change == null) return;
+
+            change.cleared = true;
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * All notifications have been cleared from the status bar.
+     */
+    public static void clearedAll() {
+        synchronized (lock) {
+            if (listener == null) return;
+
+            for (Change change : pending.values()) change.cleared = false;
+            pendingClearAll = true;
+            scheduleFlush();
+        }
+    }
+
+    private static void setState(int id, String state, NotificationAttributes attributes) {
+        synchronized (lock) {
+            Change change = getChange(id);
+            if (change == null) return;
+
+            boolean removing = DELETED.equals(state) || EXPIRED.equals(state);
+
+            if (removing) {
+                // Created in this batch, never seen by the listener
+                change.state = change.created ? null : state;
+            } else if (change.created) {
+                change.state = CREATED;
+            } else if (CREATED.equals(state) && change.state == null) {
+                change.created = true;
+                change.state = CREATED;
+            } else {
+                change.state = UPDATED;
+            }
+
+            // Callers keep changing their attributes after this
+            change.attributes = removing || attributes == null ? null : attributes.copy();
+
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Get the pending change of a notification, null if there is no
+     * listener. Must be called while holding the lock.
+     */
+    private static Change getChange(int id) {
+        if (listener == null) return null;
+
+        Change change = pending.get(id);
+        if (change == null) {
+            change = new Change();
+            pending.put(id, change);
+        }
+
+        return change;
+    }
+
+    /**
+     * Must be called while holding the lock.
+     */
+    private static void scheduleFlush() {
+        if (flushScheduled) return;
+
+        flushScheduled = true;
+        getHandler().postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, FLUSH_INTERVAL);
+    }
+
+    private static void flush() {
+        Listener flushListener;
+        ArrayList<Event> events = new ArrayList<Event>();
+
+        synchronized (lock) {
+            flushScheduled = false;
+            flushListener = listener;
+            if (flushListener == null) return;
+
+            if (pendingClearAll) events.add(new Event(CLEARED_ALL, null, null, null));
+
+            for (Map.Entry<Integer, Change> entry : pending.entrySet()) {
+                Integer id = entry.getKey();
+                Change change = entry.getValue();
+
+                if (change.fired) events.add(new Event(FIRED, id, null, change.nextFireAt));
+                if (change.state != null) events.add(new Event(change.state, id, change.attributes, null));
+                if (change.cleared) events.add(new Event(CLEARED, id, null, null));
+            }
+
+            pending.clear();
+            pendingClearAll = false;
+        }
+
+        if (events.isEmpty()) return;
+
+        try {
+            flushListener.onChanges(events);
+        } catch (Exception e) {
+            Log.e("ReactSystemNotification", "NotificationChangeFeed: flush Error: " + Log.getStackTraceString(e));
+        }
+
+        if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "NotificationChangeFeed: Flushed " + events.size() + " changes");
+    }
+
+    /**
+     * Flushes run off the main thread, building the events reads the
+     * pictures back from NotificationImageStore.
+     */
+    private static Handler getHandler() {
+        if (handler == null) {
+            HandlerThread thread = new HandlerThread("NotificationChangeFeed", Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        return handler;
+    }
+
+    private static class Change {
+        String state = null;
+        boolean created = false;
+        NotificationAttributes attributes = null;
+        boolean fired = false;
+        Long nextFireAt = null;
+        boolean cleared = false;
+    }
+}
@@ -0,0 +1,167 @@
+package io.neson.react.notification;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+
+import android.util.Log;
+
+/**
+ * Garbage collector of the saved notifications.
+ *
+ * Saved notifications can outlive their schedule, e.g. when the deletion of
+ * a one-time notification is lost to a crash after it was shown. A
+ * collection deletes, in one transaction, those past their `endAt` and
+ * one-time ones that have already fired, cancels their leftover alarm
+ * intents, then publishes what is due, re-arming the scheduler's alarm if it
+ * was lost on an app update or force-stop, and sweeps the unused images. It
+ * runs at boot and on an inexact repeating alarm, daily by default.
+ */
+public class NotificationCollector {
+    final static String ACTION_COLLECT = "io.neson.react.notification.COLLECT";
+
+    public static final long DEFAULT_INTERVAL = AlarmManager.INTERVAL_DAY;
+
+    private static final String PREFERENCES_KEY = "ReactNativeSystemNotification.collector";
+    private static final String INTERVAL_KEY = "interval";
+
+    private static final Object lock = new Object();
+
+    /**
+     * What a collection reclaimed.
+     */
+    public static class Result {
+        public final int count;
+        public final long bytes;
+
+        Result(int count, long bytes) {
+            this.count = count;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Delete the out-dated saved notifications now. Blocks on disk, call it
+     * on a background thread.
+     */
+    public static Result collect(final Context context) {
+        synchronized (lock) {
+            long startTime = NotificationMetrics.start();
+            final long now = System.currentTimeMillis();
+            final NotificationScheduler scheduler = NotificationScheduler.getInstance(context);
+
+            final ArrayList<Integer> candidates = new ArrayList<Integer>();
+            for (int id : NotificationAttributesCache.getIDs(context)) {
+                if (isGarbage(NotificationAttributesCache.getHeader(context, id), scheduler.getFireAt(id), now)) {
+                    candidates.add(id);
+                }
+            }
+
+            final int[] count = new int[1];
+            final long[] bytes = new long[1];
+
+            if (!candidates.isEmpty()) {
+                NotificationManager.runLocked(candidates, new Runnable() {
+                    @Override
+                    public void run() {
+                        NotificationStore.Transaction transaction = NotificationManager.getStore(context).edit();
+                        NotificationResources resources = NotificationResources.getInstance(context);
+
+                        for (int id : candidates) {
+                            // Changed since the scan
+                            NotificationAttributes header = NotificationAttributesCache.getHeader(context, id);
+                            if (!isGarbage(header, scheduler.getFireAt(id), now)) continue;
+
+                            bytes[0] += NotificationAttributesCache.getRecordSize(context, id);
+
+                            Notification notification = new Notification(context, id, header);
+                            notification.cancelAlarm();
+                            notification.deleteFromPreferences(transaction);
+                            resources.removePendingIntents(id);
+                            NotificationChangeFeed.expired(id);
+                            count[0]++;
+                        }
+
+                        transaction.commit();
+                    }
+                });
+            }
+
+            // Repairs the alarm, if it was lost
+            scheduler.publishDue();
+
+            bytes[0] += NotificationImageStore.getInstance(context).sweep();
+
+            Log.i("ReactSystemNotification", "NotificationCollector: Collected " + count[0] + " notifications, " + bytes[0] + " bytes");
+
+            NotificationMetrics.increment(NotificationMetrics.COLLECTED, count[0]);
+            NotificationMetrics.increment(NotificationMetrics.COLLECTED_BYTES, bytes[0]);
+            NotificationMetrics.record(NotificationMetrics.COLLECT, startTime);
+
+            return new Result(count[0], bytes[0]);
+        }
+    }
+
+    /**
+     * Set how often (in ms) to collect in the background, 0 to stop. Kept
+     * across restarts.
+     */
+    public static void setInterval(Context context, long interval) {
+        getPreferences(context).edit().putLong(INTERVAL_KEY, interval).apply();
+        arm(context, true);
+    }
+
+    /**
+     * Arm the repeating collection alarm. Unless forced, an alarm already
+     * armed is kept.
+     */
+    public static void arm(Context context, boolean force) {
+        long interval = getPreferences(context).getLong(INTERVAL_KEY, DEFAULT_INTERVAL);
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+
+        if (interval <= 0) {
+            PendingIntent pendingIntent = getCollectIntent(context, PendingIntent.FLAG_NO_CREATE);
+            if (pendingIntent != null) {
+                alarmManager.cancel(pendingIntent);
+                pendingIntent.cancel();
+            }
+            return;
+        }
+
+        if (!force && getCollectIntent(context, PendingIntent.FLAG_NO_CREATE) != null) return;
+
+        PendingIntent pendingIntent = getCollectIntent(context, PendingIntent.FLAG_UPDATE_CURRENT);
+        alarmManager.setInexactRepeating(AlarmManager.RTC, System.currentTimeMillis() + interval, interval, pendingIntent);
+
+        if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "NotificationCollector: Armed Every: " + interval + "ms");
+    }
+
+    /**
+     * Whether a saved notification is past its `endAt`, or is a one-time one
+     * that has fired: its fire time has passed and the scheduler, which
+     * queues every saved fire time, has published it. Overdue ones still
+     * queued are shown by publishDue(), those with no fire time are kept.
+     */
+    private static boolean isGarbage(NotificationAttributes header, Long fireAt, long now) {
+        if (header == null) return false;
+        if (header.endAt != null && header.endAt < now) return true;
+
+        boolean oneTime = (header.delayed != null && header.delayed) || header.repeatType == null;
+        return oneTime && fireAt == null && header.nextFireAt != null && header.nextFireAt <= now;
+    }
+
+    private static PendingIntent getCollectIntent(Context context, int flags) {
+        Intent intent = new Intent(context, NotificationPublisher.class);
+        intent.setAction(ACTION_COLLECT);
+
+        return PendingIntent.getBroadcast(context, 0, intent, flags);
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES_KEY, Context.MODE_PRIVATE);
+    }
+}
@@ -23,11 +23,16 @@ public class NotificationEventReceiver extends BroadcastReceiver {
     final static String NOTIFICATION_ID = "id";
     final static String ACTION = "action";
     final static String PAYLOAD = "payload";
+    final static String DISMISSED = "dismissed";
 
     @Override
     public void onReceive(Context context, Intent intent) {
         Bundle extras = intent.getExtras();
 
+        // A group summary has been seen, start the group over
+        NotificationGrouper.clear(extras.getInt(NOTIFICATION_ID));
+        if (extras.getBoolean(DISMISSED)) return;
+
         Log.i("ReactSystemNotification", "NotificationEventReceiver: Recived: " + extras.getString(ACTION) + ", Notification ID: " + extras.getInt(NOTIFICATION_ID) + ", payload: " + extras.getString(PAYLOAD));
 
         // If the application is not running or is not in foreground, start it with the notification
@@ -0,0 +1,195 @@
+package io.neson.react.notification;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import android.util.Log;
+
+/**
+ * Bundles notifications of the same conversation into one.
+ *
+ * A notification with `groupBy` set is keyed by that field of its payload
+ * (e.g. a conversation id or `from`). Notifications of a group arriving within
+ * its window are coalesced: the group is posted once per window, as an
+ * InboxStyle summary of the latest messages once it holds more than one. The
+ * summary keeps accumulating until it's clicked, dismissed or cleared.
+ */
+public class NotificationGrouper {
+    public static final int DEFAULT_WINDOW = 2000;
+    private static final int MAX_LINES = 6;
+
+    private static final Object lock = new Object();
+    private static final HashMap<String, Group> groups = new HashMap<String, Group>();
+    private static Handler handler = null;
+
+    /**
+     * Add the notification to its group, to be posted when the window of the
+     * group closes. Returns false if it's not grouped, to be shown as usual.
+     */
+    public static boolean add(Notification notification) {
+        NotificationAttributes attributes = notification.getAttributes();
+        String key = getKey(notification.getContext(), attributes);
+        if (key == null) return false;
+
+        String line = attributes.subject != null ?
+            "<b>" + TextUtils.htmlEncode(attributes.subject) + "</b> " + htmlEncode(attributes.message) :
+            htmlEncode(attributes.message);
+
+        synchronized (lock) {
+            Group group = groups.get(key);
+            if (group == null) {
+                group = new Group(notification.getContext(), key);
+                groups.put(key, group);
+            }
+
+            group.lines.add(line);
+            if (group.lines.size() > MAX_LINES) group.lines.remove(0);
+            group.count++;
+            group.latest = attributes;
+
+            if (!group.flushScheduled) {
+                group.flushScheduled = true;
+                int window = attributes.groupWindow != null ? attributes.groupWindow : DEFAULT_WINDOW;
+                getHandler().postDelayed(group, window);
+            }
+        }
+
+        NotificationMetrics.increment(NotificationMetrics.GROUPED, 1);
+
+        return true;
+    }
+
+    /**
+     * Forget the messages of the group shown under the given notification id,
+     * after it has been clicked, dismissed or cleared.
+     */
+    public static void clear(int id) {
+        synchronized (lock) {
+            Iterator<Group> iterator = groups.values().iterator();
+
+            while (iterator.hasNext()) {
+                Group group = iterator.next();
+                if (group.id == id && !group.flushScheduled) iterator.remove();
+                else if (group.id == id) group.reset();
+            }
+        }
+    }
+
+    /**
+     * Forget the messages of all groups.
+     */
+    public static void clearAll() {
+        synchronized (lock) {
+            Iterator<Group> iterator = groups.values().iterator();
+
+            while (iterator.hasNext()) {
+                Group group = iterator.next();
+                if (!group.flushScheduled) iterator.remove();
+                else group.reset();
+            }
+        }
+    }
+
+    /**
+     * The notification id under which a group is shown, in the reserved
+     * range of NotificationManager after the missed summary's, so it can't
+     * replace a notification of the app.
+     */
+    public static int getID(String key) {
+        int slots = NotificationManager.RESERVED_ID_COUNT - 1;
+        return NotificationManager.RESERVED_ID_MIN + 1 + ((key.hashCode() & Integer.MAX_VALUE) % slots);
+    }
+
+    private static String getKey(Context context, NotificationAttributes attributes) {
+        if (attributes.groupBy == null || attributes.payload == null) return null;
+
+        try {
+            String value = NotificationResources.getInstance(context).getPayload(attributes.payload).getString(attributes.groupBy);
+
+            return value == null ? null : attributes.groupBy + ":" + value;
+        } catch (Exception e) {
+            Log.e("ReactSystemNotification", "NotificationGrouper: getKey Error: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String htmlEncode(String text) {
+        return text == null ? "" : TextUtils.htmlEncode(text);
+    }
+
+    private static Handler getHandler() {
+        if (handler == null) handler = new Handler(Looper.getMainLooper());
+        return handler;
+    }
+
+    private static class Group implements Runnable {
+        final Context context;
+        final String key;
+        final int id;
+        final ArrayList<String> lines = new ArrayList<String>();
+        int count = 0;
+        NotificationAttributes latest = null;
+        boolean flushScheduled = false;
+
+        Group(Context context, String key) {
+            this.context = context.getApplicationContext();
+            this.key = key;
+            this.id = getID(key);
+        }
+
+        void reset() {
+            lines.clear();
+            count = 0;
+        }
+
+        /**
+         * Window closed, post the group off the main thread.
+         */
+        @Override
+        public void run() {
+            NotificationWorker.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
+
+        private void flush() {
+            NotificationAttributes attributes;
+            int messageCount;
+
+            synchronized (lock) {
+                flushScheduled = false;
+                if (count == 0) {
+                    groups.remove(key);
+                    return;
+                }
+
+                // Copy the latest message, it's not ours to change
+                attributes = latest.copy();
+                attributes.id = id;
+                attributes.group = key;
+                messageCount = count;
+
+                if (messageCount > 1) {
+                    attributes.inboxStyle = true;
+                    attributes.inboxStyleBigContentTitle = messageCount + " new messages";
+                    attributes.inboxStyleLines = new ArrayList<String>(lines);
+                    attributes.inboxStyleSummaryText = messageCount > lines.size() ? "+" + (messageCount - lines.size()) + " more" : null;
+                    attributes.number = messageCount;
+                }
+            }
+
+            new Notification(context, id, attributes).show();
+
+            if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "NotificationGrouper: Posted " + key + " with " + messageCount + " messages");
+        }
+    }
+}
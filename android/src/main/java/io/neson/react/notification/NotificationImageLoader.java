@@ -0,0 +1,139 @@
+package io.neson.react.notification;
+
+import android.graphics.Bitmap;
+import android.util.SparseArray;
+import android.webkit.CookieManager;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import android.util.Log;
+
+/**
+ * Resolves the images of notifications in the background.
+ *
+ * Notifications are first shown without their images, then re-notified under
+ * the same id once the images are loaded. Pending loads are dropped if the
+ * notification is cleared or deleted in the meantime.
+ */
+public class NotificationImageLoader {
+    private static volatile int connectTimeout = 10000;
+    private static volatile int readTimeout = 10000;
+
+    private static final SparseArray<ImageStage> pendingStages = new SparseArray<ImageStage>();
+
+    /**
+     * Set the connect and read timeouts (in ms) used to fetch remote images.
+     */
+    public static void setTimeouts(int connectTimeout, int readTimeout) {
+        NotificationImageLoader.connectTimeout = connectTimeout;
+        NotificationImageLoader.readTimeout = readTimeout;
+    }
+
+    /**
+     * Load the images of the notification in the background, and show it
+     * again with them once they are ready.
+     */
+    public static void load(Notification notification) {
+        ImageStage stage = new ImageStage(notification);
+        ImageStage previousStage;
+
+        synchronized (pendingStages) {
+            previousStage = pendingStages.get(notification.getId());
+            pendingStages.put(notification.getId(), stage);
+        }
+
+        if (previousStage != null) previousStage.cancel();
+
+        // Dropped, the notification stays shown without its images
+        if (!NotificationWorker.executeImageLoad(stage)) stage.finish();
+    }
+
+    /**
+     * Drop the pending image loading of a notification.
+     */
+    public static void cancel(int id) {
+        ImageStage stage;
+
+        synchronized (pendingStages) {
+            stage = pendingStages.get(id);
+            pendingStages.remove(id);
+        }
+
+        // Waits for a notify in progress, so it can't outlive the cancel
+        if (stage != null) stage.cancel();
+    }
+
+    /**
+     * Open a connection to a remote image, sending the cookies the app has
+     * for its host.
+     */
+    static HttpURLConnection openConnection(String imageUrl) throws Exception {
+        CookieManager cookieManager = CookieManager.getInstance();
+        if (!cookieManager.hasCookies()) {
+            throw new Exception("No cookies in cookie manager");
+        }
+
+        URL url = new URL(imageUrl);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        connection.addRequestProperty("Cookie", cookieManager.getCookie(url.getHost()));
+
+        return connection;
+    }
+
+    /**
+     * The second stage of showing a notification: resolve its images and
+     * notify again.
+     */
+    private static class ImageStage implements Runnable {
+        private final Notification notification;
+
+        // Guarded by this
+        private boolean cancelled = false;
+
+        ImageStage(Notification notification) {
+            this.notification = notification;
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Bitmap largeIcon = notification.loadLargeIcon();
+                Bitmap bigPicture = notification.loadBigPicture();
+
+                if (largeIcon == null && bigPicture == null) return;
+
+                // Only this stage's lock, loads of other ids go on meanwhile
+                synchronized (this) {
+                    if (cancelled) return;
+
+                    notification.showWithImages(largeIcon, bigPicture);
+                }
+
+            } catch (Exception e) {
+                Log.e("ReactSystemNotification", "NotificationImageLoader: Error: " + Log.getStackTraceString(e));
+
+            } finally {
+                finish();
+            }
+        }
+
+        /**
+         * Forget the stage once it's done or dropped.
+         */
+        void finish() {
+            synchronized (pendingStages) {
+                if (pendingStages.get(notification.getId()) == this) {
+                    pendingStages.remove(notification.getId());
+                }
+            }
+        }
+    }
+}
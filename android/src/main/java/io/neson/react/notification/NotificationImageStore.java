@@ -0,0 +1,226 @@
+package io.neson.react.notification;
+
+import android.content.Context;
+import android.util.Base64;
+import android.util.Base64InputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.HashSet;
+
+import android.util.Log;
+
+/**
+ * Out-of-line storage of the big pictures of saved notifications.
+ *
+ * Big pictures longer than INLINE_LIMIT are decoded once into a file under
+ * the app files dir, named by the SHA-1 of the image, and the notification
+ * keeps the hash only. Saved notifications stay small and the same image is
+ * stored once, however many notifications use it.
+ *
+ * Stored images are read back with readBase64() wherever attributes are
+ * handed to JS, so the move is not visible there.
+ *
+ * Images no saved notification uses anymore are deleted by sweep(), run by
+ * NotificationCollector, once they have been released for GRACE_PERIOD, so
+ * a notification being shown while it's deleted can still load its image.
+ */
+public class NotificationImageStore {
+    public static final int INLINE_LIMIT = 16 * 1024;
+
+    private static final String DIRECTORY_NAME = "notification-images";
+    private static final long GRACE_PERIOD = 10 * 60 * 1000;
+
+    private static NotificationImageStore instance = null;
+
+    private final Context context;
+    private final File directory;
+
+    /**
+     * Get the store of the application.
+     */
+    public static synchronized NotificationImageStore getInstance(Context context) {
+        if (instance == null) instance = new NotificationImageStore(context.getApplicationContext());
+        return instance;
+    }
+
+    private NotificationImageStore(Context context) {
+        this.context = context;
+        this.directory = new File(context.getFilesDir(), DIRECTORY_NAME);
+    }
+
+    /**
+     * Move the big picture of the attributes to a file if it's too large to
+     * be saved inline. On failure it's left inline.
+     */
+    public void externalize(NotificationAttributes attributes) {
+        String base64 = attributes.bigStyleImageBase64;
+        if (base64 == null || base64.length() <= INLINE_LIMIT) return;
+
+        try {
+            attributes.bigStyleImageRef = write(base64);
+            attributes.bigStyleImageBase64 = null;
+        } catch (Exception e) {
+            Log.e("ReactSystemNotification", "NotificationImageStore: externalize Error: " + Log.getStackTraceString(e));
+        }
+    }
+
+    /**
+     * The file of a stored image.
+     */
+    public File getFile(String ref) {
+        return new File(directory, ref);
+    }
+
+    /**
+     * Read a stored image back as base 64, null if it's gone.
+     */
+    public String readBase64(String ref) {
+        File file = getFile(ref);
+
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+                byte[] buffer = new byte[8192];
+                int count;
+
+                while ((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                }
+
+                return Base64.encodeToString(out.toByteArray(), Base64.NO_WRAP);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.e("ReactSystemNotification", "NotificationImageStore: readBase64 Error: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Record that a notification using a stored image has been deleted. The
+     * image is deleted by a later sweep(), if no notification uses it then.
+     */
+    public void release(String ref) {
+        getFile(ref).setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * Delete the stored images no saved notification uses, released more
+     * than GRACE_PERIOD ago. Returns the number of bytes reclaimed.
+     */
+    public synchronized long sweep() {
+        File[] files = directory.listFiles();
+        if (files == null || files.length == 0) return 0;
+
+        HashSet<String> refs = new HashSet<String>();
+        for (int id : NotificationAttributesCache.getIDs(context)) {
+            NotificationAttributes attributes = NotificationAttributesCache.getHeader(context, id);
+            if (attributes != null && attributes.bigStyleImageRef != null) refs.add(attributes.bigStyleImageRef);
+        }
+
+        long releasedBefore = System.currentTimeMillis() - GRACE_PERIOD;
+        long reclaimed = 0;
+
+        for (File file : files) {
+            if (refs.contains(file.getName()) || file.lastModified() > releasedBefore) continue;
+
+            long length = file.length();
+            if (file.delete()) reclaimed += length;
+        }
+
+        if (reclaimed > 0) Log.i("ReactSystemNotification", "NotificationImageStore: Swept " + reclaimed + " bytes");
+
+        return reclaimed;
+    }
+
+    /**
+     * Decode the base 64 image to a file, streaming, and return its hash.
+     */
+    private synchronized String write(String base64) throws Exception {
+        if (!directory.exists() && !directory.mkdirs()) throw new IOException("Cannot create " + directory);
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        File tmpFile = new File(directory, "image.tmp");
+
+        InputStream in = openBase64(base64);
+        try {
+            OutputStream out = new FileOutputStream(tmpFile);
+            try {
+                byte[] buffer = new byte[8192];
+                int count;
+
+                while ((count = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, count);
+                    out.write(buffer, 0, count);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+
+        String ref = toHex(digest.digest());
+        File file = getFile(ref);
+
+        // Same content, already stored
+        if (file.exists() || !tmpFile.renameTo(file)) tmpFile.delete();
+
+        return ref;
+    }
+
+    /**
+     * Stream the decoded bytes of a base 64 string, without copying it.
+     */
+    static InputStream openBase64(String base64) {
+        return new Base64InputStream(new AsciiInputStream(base64), Base64.DEFAULT);
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+
+        return hex.toString();
+    }
+
+    /**
+     * The bytes of an ASCII string.
+     */
+    private static class AsciiInputStream extends InputStream {
+        private final String string;
+        private int position = 0;
+
+        AsciiInputStream(String string) {
+            this.string = string;
+        }
+
+        @Override
+        public int read() {
+            return position < string.length() ? string.charAt(position++) & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position >= string.length()) return -1;
+
+            int count = Math.min(length, string.length() - position);
+            for (int i = 0; i < count; i++) {
+                buffer[offset + i] = (byte) string.charAt(position++);
+            }
+
+            return count;
+        }
+    }
+}
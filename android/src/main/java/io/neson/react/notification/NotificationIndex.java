@@ -0,0 +1,279 @@
+package io.neson.react.notification;
+
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+import android.util.Log;
+
+/**
+ * In-memory secondary indexes over the saved notifications, maintained by
+ * NotificationAttributesCache on every change.
+ *
+ * Notifications are indexed by next fire time (sorted) and by repeat type,
+ * from their schedule header. The action and the payload fields are not in
+ * the header, they are indexed on demand: the first query by action or by a
+ * payload key reads them through the FieldReader and builds the index, which
+ * is then maintained like the others. Not thread-safe, the cache calls it
+ * while holding its lock.
+ */
+class NotificationIndex {
+    private final TreeMap<Long, HashSet<Integer>> byFireTime = new TreeMap<Long, HashSet<Integer>>();
+    private final HashMap<String, HashSet<Integer>> byRepeatType = new HashMap<String, HashSet<Integer>>();
+    private HashMap<String, HashSet<Integer>> byAction = null;
+    private final HashMap<String, HashMap<String, HashSet<Integer>>> byPayloadKey = new HashMap<String, HashMap<String, HashSet<Integer>>>();
+
+    // What each id is indexed under, to unindex it
+    private final SparseArray<NotificationAttributes> indexed = new SparseArray<NotificationAttributes>();
+    private final SparseArray<Long> fireTimes = new SparseArray<Long>();
+    private final SparseArray<String> actions = new SparseArray<String>();
+    private final SparseArray<HashMap<String, String>> payloadValues = new SparseArray<HashMap<String, String>>();
+
+    private final FieldReader fieldReader;
+
+    /**
+     * Reads the fields of a notification that are not in its header.
+     */
+    interface FieldReader {
+        /**
+         * The action of a notification, null if missing.
+         */
+        String readAction(int id);
+
+        /**
+         * A payload field of a notification, null if missing.
+         */
+        String readPayload(int id, String key);
+    }
+
+    NotificationIndex(FieldReader fieldReader) {
+        this.fieldReader = fieldReader;
+    }
+
+    /**
+     * Index a notification, replacing what it was indexed under before.
+     */
+    void put(int id, NotificationAttributes header) {
+        remove(id);
+
+        Long fireTime = header.nextFireAt != null ? header.nextFireAt : header.sendAt;
+        fireTimes.put(id, fireTime);
+        if (fireTime != null) add(byFireTime, fireTime, id);
+
+        add(byRepeatType, header.repeatType, id);
+
+        if (byAction != null) {
+            String action = fieldReader.readAction(id);
+            actions.put(id, action);
+            add(byAction, action, id);
+        }
+
+        if (!byPayloadKey.isEmpty()) {
+            HashMap<String, String> values = new HashMap<String, String>();
+
+            for (Map.Entry<String, HashMap<String, HashSet<Integer>>> entry : byPayloadKey.entrySet()) {
+                String value = fieldReader.readPayload(id, entry.getKey());
+                values.put(entry.getKey(), value);
+                add(entry.getValue(), value, id);
+            }
+
+            payloadValues.put(id, values);
+        }
+
+        indexed.put(id, header);
+    }
+
+    /**
+     * Unindex a notification.
+     */
+    void remove(int id) {
+        NotificationAttributes header = indexed.get(id);
+        if (header == null) return;
+
+        Long fireTime = fireTimes.get(id);
+        if (fireTime != null) remove(byFireTime, fireTime, id);
+
+        remove(byRepeatType, header.repeatType, id);
+        if (byAction != null) remove(byAction, actions.get(id), id);
+
+        HashMap<String, String> values = payloadValues.get(id);
+        if (values != null) {
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                HashMap<String, HashSet<Integer>> index = byPayloadKey.get(entry.getKey());
+                if (index != null) remove(index, entry.getValue(), id);
+            }
+        }
+
+        indexed.remove(id);
+        fireTimes.remove(id);
+        actions.remove(id);
+        payloadValues.remove(id);
+    }
+
+    /**
+     * Get the ids of the notifications matching a query, ordered by next
+     * fire time, then id; notifications without one come last.
+     */
+    ArrayList<Integer> query(NotificationQuery query) {
+        // Start from the most selective index at hand, filter by the others
+        Collection<Integer> candidates = null;
+
+        if (query.action != null) candidates = get(getActionIndex(), query.action);
+        if (query.payloadKey != null) candidates = smallest(candidates, get(getPayloadIndex(query.payloadKey), query.payloadValue));
+        if (query.repeatType != null) candidates = smallest(candidates, get(byRepeatType, query.repeatType));
+
+        boolean hasRange = query.fireAfter != null || query.fireBefore != null;
+        ArrayList<Integer> ids = new ArrayList<Integer>();
+
+        if (candidates == null && hasRange) {
+            // Already in order
+            for (HashSet<Integer> fireTimeIDs : getRange(query).values()) {
+                ArrayList<Integer> sorted = new ArrayList<Integer>(fireTimeIDs);
+                Collections.sort(sorted);
+                for (int id : sorted) if (matches(id, query)) ids.add(id);
+            }
+            return ids;
+        }
+
+        if (candidates == null) {
+            for (int i = 0; i < indexed.size(); i++) ids.add(indexed.keyAt(i));
+        } else {
+            ids.addAll(candidates);
+        }
+
+        ArrayList<Integer> matching = new ArrayList<Integer>(ids.size());
+        for (int id : ids) if (matches(id, query)) matching.add(id);
+
+        Collections.sort(matching, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                Long lhsFireTime = fireTimes.get(lhs);
+                Long rhsFireTime = fireTimes.get(rhs);
+
+                if (lhsFireTime == null || rhsFireTime == null) {
+                    if (lhsFireTime != rhsFireTime) return lhsFireTime == null ? 1 : -1;
+                } else if (!lhsFireTime.equals(rhsFireTime)) {
+                    return lhsFireTime < rhsFireTime ? -1 : 1;
+                }
+
+                return lhs.compareTo(rhs);
+            }
+        });
+
+        return matching;
+    }
+
+    private boolean matches(int id, NotificationQuery query) {
+        NotificationAttributes header = indexed.get(id);
+        if (header == null) return false;
+
+        Long fireTime = fireTimes.get(id);
+        if (query.fireAfter != null && (fireTime == null || fireTime < query.fireAfter)) return false;
+        if (query.fireBefore != null && (fireTime == null || fireTime >= query.fireBefore)) return false;
+
+        if (query.repeatType != null && !query.repeatType.equals(header.repeatType)) return false;
+        if (query.action != null && !query.action.equals(actions.get(id))) return false;
+
+        if (query.payloadKey != null) {
+            HashMap<String, String> values = payloadValues.get(id);
+            String value = values == null ? null : values.get(query.payloadKey);
+            if (value == null ? query.payloadValue != null : !value.equals(query.payloadValue)) return false;
+        }
+
+        return true;
+    }
+
+    private Map<Long, HashSet<Integer>> getRange(NotificationQuery query) {
+        if (query.fireAfter != null && query.fireBefore != null) {
+            if (query.fireAfter >= query.fireBefore) return Collections.emptyMap();
+            return byFireTime.subMap(query.fireAfter, query.fireBefore);
+        }
+        if (query.fireAfter != null) return byFireTime.tailMap(query.fireAfter);
+
+        return byFireTime.headMap(query.fireBefore);
+    }
+
+    /**
+     * Get the index of the actions, building it on first use.
+     */
+    private HashMap<String, HashSet<Integer>> getActionIndex() {
+        if (byAction != null) return byAction;
+
+        long startTime = System.currentTimeMillis();
+        byAction = new HashMap<String, HashSet<Integer>>();
+
+        for (int i = 0; i < indexed.size(); i++) {
+            int id = indexed.keyAt(i);
+            String action = fieldReader.readAction(id);
+
+            actions.put(id, action);
+            add(byAction, action, id);
+        }
+
+        Log.i("ReactSystemNotification", "NotificationIndex: Indexed actions in " + (System.currentTimeMillis() - startTime) + "ms");
+
+        return byAction;
+    }
+
+    /**
+     * Get the index of a payload key, building it on first use.
+     */
+    private HashMap<String, HashSet<Integer>> getPayloadIndex(String key) {
+        HashMap<String, HashSet<Integer>> index = byPayloadKey.get(key);
+        if (index != null) return index;
+
+        long startTime = System.currentTimeMillis();
+        index = new HashMap<String, HashSet<Integer>>();
+        byPayloadKey.put(key, index);
+
+        for (int i = 0; i < indexed.size(); i++) {
+            int id = indexed.keyAt(i);
+            String value = fieldReader.readPayload(id, key);
+
+            HashMap<String, String> values = payloadValues.get(id);
+            if (values == null) {
+                values = new HashMap<String, String>();
+                payloadValues.put(id, values);
+            }
+            values.put(key, value);
+            add(index, value, id);
+        }
+
+        Log.i("ReactSystemNotification", "NotificationIndex: Indexed payload key " + key + " in " + (System.currentTimeMillis() - startTime) + "ms");
+
+        return index;
+    }
+
+    private static Collection<Integer> get(HashMap<String, HashSet<Integer>> index, String value) {
+        HashSet<Integer> ids = index.get(value);
+        return ids == null ? Collections.<Integer>emptySet() : ids;
+    }
+
+    private static Collection<Integer> smallest(Collection<Integer> lhs, Collection<Integer> rhs) {
+        return lhs == null || rhs.size() < lhs.size() ? rhs : lhs;
+    }
+
+    private static <K> void add(Map<K, HashSet<Integer>> index, K key, int id) {
+        HashSet<Integer> ids = index.get(key);
+        if (ids == null) {
+            ids = new HashSet<Integer>();
+            index.put(key, ids);
+        }
+        ids.add(id);
+    }
+
+    private static <K> void remove(Map<K, HashSet<Integer>> index, K key, int id) {
+        HashSet<Integer> ids = index.get(key);
+        if (ids == null) return;
+
+        ids.remove(id);
+        if (ids.isEmpty()) index.remove(key);
+    }
+}
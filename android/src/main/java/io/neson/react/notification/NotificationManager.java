@@ -1,33 +1,149 @@
 package io.neson.react.notification;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 
 import io.neson.react.notification.Notification;
 import io.neson.react.notification.NotificationAttributes;
 
+import java.io.File;
 import java.util.ArrayList;
-import java.util.Set;
-
-import android.util.Log;
+import java.util.Arrays;
+import java.util.Collection;
 
 /**
  * A high level notification manager
  *
  * Warps the system notification API to make managing direct and scheduled
  * notification easy.
+ *
+ * The module, the receivers and the GCM service call it from different
+ * threads. Operations on the same notification id are serialized by a lock
+ * per id (striped over LOCK_STRIPES locks), including the commit of their own
+ * transaction; operations on other ids run in parallel. Operations recording
+ * into a caller's transaction are serialized in memory only, the caller
+ * commits them.
  */
 public class NotificationManager {
     final static String PREFERENCES_KEY = "ReactNativeSystemNotification";
+    final static String STORE_FILE_NAME = "ReactNativeSystemNotification.log";
+
+    // A power of two
+    private static final int LOCK_STRIPES = 64;
+
+    // Ids the module posts its own notifications under (summaries), apps
+    // can't use them
+    public static final int RESERVED_ID_MIN = Integer.MIN_VALUE;
+    public static final int RESERVED_ID_COUNT = 1 << 24;
+
+    private static NotificationStore store = null;
+    private static NotificationManager instance = null;
+    private static final Object[] locks = new Object[LOCK_STRIPES];
+
+    static {
+        for (int i = 0; i < LOCK_STRIPES; i++) locks[i] = new Object();
+    }
+
     public Context context = null;
-    public SharedPreferences sharedPreferences = null;
 
     /**
-     * Constructor.
+     * Get the manager of the application.
+     */
+    public static synchronized NotificationManager getInstance(Context context) {
+        if (instance == null) instance = new NotificationManager(context.getApplicationContext());
+        return instance;
+    }
+
+    /**
+     * Constructor. Prefer getInstance(), instances share their locks anyway.
      */
     public NotificationManager(Context context) {
         this.context = context;
-        this.sharedPreferences = (SharedPreferences) context.getSharedPreferences(PREFERENCES_KEY, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Whether an id is reserved for the module's own notifications.
+     */
+    public static boolean isReservedID(int notificationID) {
+        return notificationID < RESERVED_ID_MIN + RESERVED_ID_COUNT;
+    }
+
+    /**
+     * Get the lock serializing the operations on a notification id.
+     */
+    public static Object getLock(int notificationID) {
+        return locks[getStripe(notificationID)];
+    }
+
+    /**
+     * Run a task holding the locks of all the given ids, e.g. to change many
+     * notifications in a single transaction. Locks are taken in stripe
+     * order, so concurrent callers can't deadlock.
+     */
+    public static void runLocked(Collection<Integer> notificationIDs, Runnable task) {
+        boolean[] stripes = new boolean[LOCK_STRIPES];
+        for (int id : notificationIDs) stripes[getStripe(id)] = true;
+
+        runLocked(stripes, 0, task);
+    }
+
+    /**
+     * Run a task holding the locks of all ids, e.g. to go over every saved
+     * notification.
+     */
+    public static void runLockedAll(Runnable task) {
+        boolean[] stripes = new boolean[LOCK_STRIPES];
+        Arrays.fill(stripes, true);
+
+        runLocked(stripes, 0, task);
+    }
+
+    private static void runLocked(boolean[] stripes, int from, Runnable task) {
+        for (int i = from; i < LOCK_STRIPES; i++) {
+            if (!stripes[i]) continue;
+
+            synchronized (locks[i]) {
+                runLocked(stripes, i + 1, task);
+            }
+            return;
+        }
+
+        task.run();
+    }
+
+    private static int getStripe(int notificationID) {
+        return (notificationID ^ (notificationID >>> 16)) & (LOCK_STRIPES - 1);
+    }
+
+    /**
+     * Get the store of scheduled notifications.
+     *
+     * Defaults to a LogNotificationStore, importing the notifications saved
+     * in the shared preferences by earlier versions.
+     */
+    public static synchronized NotificationStore getStore(Context context) {
+        if (store == null) {
+            Context applicationContext = context.getApplicationContext();
+            LogNotificationStore logStore = new LogNotificationStore(new File(applicationContext.getFilesDir(), STORE_FILE_NAME));
+            SharedPreferencesNotificationStore legacyStore = new SharedPreferencesNotificationStore(applicationContext);
+
+            // Legacy entries are only dropped once they are in the log
+            if (!logStore.exists() && logStore.importFrom(legacyStore)) {
+                legacyStore.clear();
+            }
+
+            store = logStore;
+        }
+
+        return store;
+    }
+
+    /**
+     * Use another store for the scheduled notifications, e.g. a
+     * SharedPreferencesNotificationStore. Must be called before any
+     * notification is created or loaded, e.g. in Application#onCreate.
+     */
+    public static synchronized void setStore(NotificationStore notificationStore) {
+        store = notificationStore;
     }
 
     /**
@@ -37,11 +153,33 @@ public class NotificationManager {
         Integer notificationID,
         NotificationAttributes notificationAttributes
     ) {
-        Notification notification = new Notification(context, notificationID, notificationAttributes);
+        synchronized (getLock(notificationID)) {
+            NotificationStore.Transaction transaction = edit();
+            Notification notification = create(notificationID, notificationAttributes, transaction);
+            transaction.commit();
+
+            return notification;
+        }
+    }
+
+    /**
+     * Create a notification, recording the persistence changes in the given
+     * transaction.
+     */
+    public Notification create(
+        Integer notificationID,
+        NotificationAttributes notificationAttributes,
+        NotificationStore.Transaction transaction
+    ) {
+        check(notificationID, notificationAttributes);
+
+        synchronized (getLock(notificationID)) {
+            Notification notification = new Notification(context, notificationID, notificationAttributes);
 
-        notification.create();
+            notification.create(transaction);
 
-        return notification;
+            return notification;
+        }
     }
 
     /**
@@ -51,59 +189,80 @@ public class NotificationManager {
         Integer notificationID,
         NotificationAttributes notificationAttributes
     ) {
-        if (getIDs().contains(notificationID)) {
-            Notification notification = find(notificationID);
+        synchronized (getLock(notificationID)) {
+            NotificationStore.Transaction transaction = edit();
+            Notification notification = createOrUpdate(notificationID, notificationAttributes, transaction);
+            transaction.commit();
 
-            notification.update(notificationAttributes);
             return notification;
-
-        } else {
-            return create(notificationID, notificationAttributes);
         }
     }
 
     /**
-     * Get all notification ids.
+     * Create or update (if exists) a notification, recording the persistence
+     * changes in the given transaction.
      */
-    public ArrayList<Integer> getIDs() {
-        Set<String> keys = sharedPreferences.getAll().keySet();
-        ArrayList<Integer> ids = new ArrayList<Integer>();
-
-        for (String key : keys) {
-            try {
-                ids.add(Integer.parseInt(key));
-                // TODO: Delete out-dated notifications BTW
-            } catch (Exception e) {
-                Log.e("ReactSystemNotification", "NotificationManager: getIDs Error: " + Log.getStackTraceString(e));
+    public Notification createOrUpdate(
+        Integer notificationID,
+        NotificationAttributes notificationAttributes,
+        NotificationStore.Transaction transaction
+    ) {
+        check(notificationID, notificationAttributes);
+
+        synchronized (getLock(notificationID)) {
+            Notification notification = find(notificationID);
+
+            if (notification.getAttributes() != null) {
+                notification.update(notificationAttributes, transaction);
+                return notification;
+
+            } else {
+                return create(notificationID, notificationAttributes, transaction);
             }
         }
+    }
 
-        return ids;
+    /**
+     * Get all notification ids.
+     */
+    public ArrayList<Integer> getIDs() {
+        // Out-dated notifications are deleted by NotificationCollector
+        return NotificationAttributesCache.getIDs(context);
     }
 
     /**
      * Get a notification by its id.
      */
     public Notification find(Integer notificationID) {
-        Notification notification = new Notification(context, notificationID, null);
-
-        if (notification.getAttributes() == null) notification.loadAttributesFromPreferences();
-
-        return notification;
+        return new Notification(context, notificationID, NotificationAttributesCache.get(context, notificationID));
     }
 
     /**
      * Delete a notification by its id.
      */
     public Notification delete(Integer notificationID) {
-        return find(notificationID).delete();
+        synchronized (getLock(notificationID)) {
+            return find(notificationID).delete();
+        }
+    }
+
+    /**
+     * Delete a notification by its id, recording the persistence changes in
+     * the given transaction.
+     */
+    public Notification delete(Integer notificationID, NotificationStore.Transaction transaction) {
+        synchronized (getLock(notificationID)) {
+            return find(notificationID).delete(transaction);
+        }
     }
 
     /**
      * Clear a notification by its id.
      */
     public Notification clear(Integer notificationID) {
-        return find(notificationID).clear();
+        synchronized (getLock(notificationID)) {
+            return find(notificationID).clear();
+        }
     }
 
     /**
@@ -111,6 +270,41 @@ public class NotificationManager {
      */
     public void clearAll() {
         android.app.NotificationManager systemNotificationManager = (android.app.NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        NotificationThrottler.cancelAll();
         systemNotificationManager.cancelAll();
+        NotificationGrouper.clearAll();
+        NotificationChangeFeed.clearedAll();
+    }
+
+    /**
+     * Throw if a notification can't be created or updated with the given
+     * attributes, before anything has changed. Batches check all their
+     * notifications first, so a failed update doesn't leave the old version
+     * deleted.
+     */
+    public static void check(int notificationID, NotificationAttributes notificationAttributes) {
+        checkID(notificationID);
+
+        if (notificationAttributes.delayed == null || notificationAttributes.scheduled == null) {
+            throw new IllegalArgumentException("Notification " + notificationID + " has no delayed or scheduled flag");
+        }
+
+        if (notificationAttributes.delayed && notificationAttributes.delay == null) {
+            throw new IllegalArgumentException("Notification " + notificationID + " is delayed without a delay");
+        }
+    }
+
+    private static void checkID(int notificationID) {
+        if (isReservedID(notificationID)) {
+            throw new IllegalArgumentException("Notification id " + notificationID + " is reserved");
+        }
+    }
+
+    /**
+     * Start a store transaction, so changes to many notifications can be
+     * written at once.
+     */
+    public NotificationStore.Transaction edit() {
+        return getStore(context).edit();
     }
 }
@@ -0,0 +1,163 @@
+package io.neson.react.notification;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide counters and latency histograms of the notification hot paths.
+ *
+ * Latencies are recorded in microseconds into power-of-two buckets, so
+ * recording is a few arithmetic operations and no allocation. Read them with
+ * getTimers() and getCounters(), exposed to JS by NotificationModule.
+ */
+public class NotificationMetrics {
+    public static final String CREATE = "create";
+    public static final String SHOW = "show";
+    public static final String BUILD = "build";
+    public static final String PERSIST = "persist";
+    public static final String ALARM_ARM = "alarmArm";
+    public static final String PUBLISH = "publish";
+    public static final String BOOT_RESTORE = "bootRestore";
+    public static final String GCM_ENCODE = "gcmEncode";
+    public static final String IMAGE_FETCH = "imageFetch";
+    public static final String COLLECT = "collect";
+    public static final String BIND = "bind";
+
+    public static final String PUBLISHED = "published";
+    public static final String EXPIRED = "expired";
+    public static final String MISSED = "missed";
+    public static final String IMAGE_FETCH_ERRORS = "imageFetchErrors";
+    public static final String IMAGE_LOADS_DROPPED = "imageLoadsDropped";
+    public static final String GROUPED = "grouped";
+    public static final String NOTIFY_DELAYED = "notifyDelayed";
+    public static final String NOTIFY_MERGED = "notifyMerged";
+    public static final String NOTIFY_DROPPED = "notifyDropped";
+    public static final String COLLECTED = "collected";
+    public static final String COLLECTED_BYTES = "collectedBytes";
+
+    /**
+     * Whether chatty per-notification logging is enabled. Turn it on with
+     * `adb shell setprop log.tag.ReactSystemNotification DEBUG` and restart
+     * the app.
+     */
+    public static final boolean DEBUG = Log.isLoggable("ReactSystemNotification", Log.DEBUG);
+
+    // Bucket i counts latencies below 2^i microseconds, the last one the rest
+    public static final int BUCKETS = 26;
+
+    private static final Object lock = new Object();
+    private static final HashMap<String, Timer> timers = new HashMap<String, Timer>();
+    private static final HashMap<String, Long> counters = new HashMap<String, Long>();
+
+    /**
+     * Start measuring a latency, to be passed to record().
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the latency of an operation started at the given start() time.
+     */
+    public static void record(String name, long startTime) {
+        long micros = (System.nanoTime() - startTime) / 1000;
+
+        synchronized (lock) {
+            Timer timer = timers.get(name);
+            if (timer == null) {
+                timer = new Timer();
+                timers.put(name, timer);
+            }
+            timer.add(micros);
+        }
+    }
+
+    /**
+     * Add to a counter.
+     */
+    public static void increment(String name, long delta) {
+        synchronized (lock) {
+            Long count = counters.get(name);
+            counters.put(name, count == null ? delta : count + delta);
+        }
+    }
+
+    /**
+     * Get a copy of the latency timers, by name.
+     */
+    public static Map<String, Timer> getTimers() {
+        synchronized (lock) {
+            HashMap<String, Timer> copy = new HashMap<String, Timer>(timers.size());
+            for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+                copy.put(entry.getKey(), entry.getValue().copy());
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * Get a copy of the counters, by name.
+     */
+    public static Map<String, Long> getCounters() {
+        synchronized (lock) {
+            return new HashMap<String, Long>(counters);
+        }
+    }
+
+    /**
+     * Clear all timers and counters.
+     */
+    public static void reset() {
+        synchronized (lock) {
+            timers.clear();
+            counters.clear();
+        }
+    }
+
+    /**
+     * Latency histogram of an operation.
+     */
+    public static class Timer {
+        public long count = 0;
+        public long totalMicros = 0;
+        public long maxMicros = 0;
+        public final long[] buckets = new long[BUCKETS];
+
+        void add(long micros) {
+            count++;
+            totalMicros += micros;
+            if (micros > maxMicros) maxMicros = micros;
+
+            int bucket = 64 - Long.numberOfLeadingZeros(micros);
+            buckets[Math.min(bucket, BUCKETS - 1)]++;
+        }
+
+        Timer copy() {
+            Timer timer = new Timer();
+            timer.count = count;
+            timer.totalMicros = totalMicros;
+            timer.maxMicros = maxMicros;
+            System.arraycopy(buckets, 0, timer.buckets, 0, BUCKETS);
+            return timer;
+        }
+
+        /**
+         * Upper bound of the given quantile (0 to 1), in microseconds.
+         */
+        public long getQuantileMicros(double quantile) {
+            if (count == 0) return 0;
+
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= rank) return Math.min(1L << i, maxMicros);
+            }
+
+            return maxMicros;
+        }
+    }
+}
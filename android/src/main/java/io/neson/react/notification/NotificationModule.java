@@ -28,6 +28,7 @@ import io.neson.react.notification.NotificationEventReceiver;
 import java.util.ArrayList;
 import java.util.Set;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import android.util.Log;
@@ -54,7 +55,19 @@ public class NotificationModule extends ReactContextBaseJavaModule {
         super(reactContext);
 
         this.mContext = reactContext;
-        this.mNotificationManager = (NotificationManager) new NotificationManager(reactContext);
+        this.mNotificationManager = NotificationManager.getInstance(reactContext);
+
+        // Reads the collector's preferences, off the thread creating the module
+        NotificationWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    NotificationCollector.arm(mContext, false);
+                } catch (Exception e) {
+                    Log.e("ReactSystemNotification", "NotificationModule: arm Error: " + Log.getStackTraceString(e));
+                }
+            }
+        });
 
         listenNotificationEvent();
     }
@@ -73,7 +86,7 @@ public class NotificationModule extends ReactContextBaseJavaModule {
             NotificationAttributes a = getNotificationAttributesFromReadableMap(notificationAttributes);
             Notification n = mNotificationManager.createOrUpdate(notificationID, a);
 
-            successCallback.invoke(n.getAttributes().asReadableMap());
+            successCallback.invoke(toWritableMap(n.getAttributes()));
 
         } catch (Exception e) {
             errorCallback.invoke(e.getMessage());
@@ -81,6 +94,80 @@ public class NotificationModule extends ReactContextBaseJavaModule {
         }
     }
 
+    /**
+     * React method to create or update many notifications at once.
+     *
+     * All persistence changes are written in one store transaction, while
+     * holding the locks of all the notifications. Every notification is
+     * read and checked before any is changed, and the whole batch fails if
+     * one has no id. Calls back with a result for each notification, in
+     * order, see getBatchError() for the failed ones.
+     */
+    @ReactMethod
+    public void rCreateBatch(
+        ReadableArray notificationsAttributes,
+        Callback errorCallback,
+        Callback successCallback
+    ) {
+        try {
+            final int size = notificationsAttributes.size();
+            final ArrayList<Integer> ids = new ArrayList<Integer>(size);
+
+            for (int i = 0; i < size; i++) {
+                ReadableMap notificationAttributes = notificationsAttributes.getMap(i);
+                if (!notificationAttributes.hasKey("id") || notificationAttributes.isNull("id")) {
+                    throw new IllegalArgumentException("Notification " + i + " of the batch has no id");
+                }
+                ids.add(notificationAttributes.getInt("id"));
+            }
+
+            final NotificationAttributes[] attributes = new NotificationAttributes[size];
+            final Exception[] errors = new Exception[size];
+
+            for (int i = 0; i < size; i++) {
+                try {
+                    attributes[i] = getNotificationAttributesFromReadableMap(notificationsAttributes.getMap(i));
+                    NotificationManager.check(ids.get(i), attributes[i]);
+                } catch (Exception e) {
+                    errors[i] = e;
+                }
+            }
+
+            final WritableArray results = new WritableNativeArray();
+
+            NotificationManager.runLocked(ids, new Runnable() {
+                @Override
+                public void run() {
+                    NotificationStore.Transaction transaction = mNotificationManager.edit();
+
+                    for (int i = 0; i < size; i++) {
+                        int notificationID = ids.get(i);
+
+                        try {
+                            if (errors[i] != null) throw errors[i];
+
+                            Notification n = mNotificationManager.createOrUpdate(notificationID, attributes[i], transaction);
+
+                            results.pushMap(getBatchResult(notificationID, n));
+
+                        } catch (Exception e) {
+                            results.pushMap(getBatchError(notificationID, e));
+                            Log.e("ReactSystemNotification", "NotificationModule: rCreateBatch Error: " + Log.getStackTraceString(e));
+                        }
+                    }
+
+                    transaction.commit();
+                }
+            });
+
+            successCallback.invoke(results);
+
+        } catch (Exception e) {
+            errorCallback.invoke(e.getMessage());
+            Log.e("ReactSystemNotification", "NotificationModule: rCreateBatch Error: " + Log.getStackTraceString(e));
+        }
+    }
+
     /**
      * React method to get all notification ids.
      */
@@ -105,6 +192,42 @@ public class NotificationModule extends ReactContextBaseJavaModule {
         }
     }
 
+    /**
+     * React method to find the saved notifications matching a query, a page
+     * at a time. Calls back with the page, ordered by next fire time, and the
+     * total number of matches.
+     */
+    @ReactMethod
+    public void rQuery(
+        ReadableMap query,
+        Callback errorCallback,
+        Callback successCallback
+    ) {
+        try {
+            NotificationQuery q = new NotificationQuery();
+            q.loadFromReadableMap(query);
+
+            ArrayList<Integer> ids = NotificationAttributesCache.query(mContext, q);
+            WritableArray rnotifications = new WritableNativeArray();
+
+            for (int i = q.offset; i < ids.size() && i < q.offset + q.limit; i++) {
+                NotificationAttributes attributes = NotificationAttributesCache.get(mContext, ids.get(i));
+                if (attributes != null) rnotifications.pushMap(toWritableMap(attributes));
+            }
+
+            WritableMap rresult = Arguments.createMap();
+            rresult.putArray("notifications", rnotifications);
+            rresult.putInt("total", ids.size());
+            rresult.putInt("offset", q.offset);
+
+            successCallback.invoke(rresult);
+
+        } catch (Exception e) {
+            errorCallback.invoke(e.getMessage());
+            Log.e("ReactSystemNotification", "NotificationModule: rQuery Error: " + Log.getStackTraceString(e));
+        }
+    }
+
     /**
      * React method to get data of a notification.
      */
@@ -116,7 +239,7 @@ public class NotificationModule extends ReactContextBaseJavaModule {
     ) {
         try {
             Notification n = mNotificationManager.find(notificationID);
-            successCallback.invoke(n.getAttributes().asReadableMap());
+            successCallback.invoke(toWritableMap(n.getAttributes()));
 
         } catch (Exception e) {
             errorCallback.invoke(e.getMessage());
@@ -136,7 +259,7 @@ public class NotificationModule extends ReactContextBaseJavaModule {
         try {
             Notification n = mNotificationManager.delete(notificationID);
 
-            successCallback.invoke(n.getAttributes().asReadableMap());
+            successCallback.invoke(toWritableMap(n.getAttributes()));
 
         } catch (Exception e) {
             errorCallback.invoke(e.getMessage());
@@ -144,6 +267,50 @@ public class NotificationModule extends ReactContextBaseJavaModule {
         }
     }
 
+    /**
+     * React method to delete (i.e. cancel scheduled) notifications by their
+     * ids, in one store transaction while holding their locks. Calls back
+     * with a result for each notification, in order.
+     */
+    @ReactMethod
+    public void rDeleteBatch(
+        ReadableArray notificationIDs,
+        Callback errorCallback,
+        Callback successCallback
+    ) {
+        try {
+            final ArrayList<Integer> ids = getIDs(notificationIDs);
+            final WritableArray results = new WritableNativeArray();
+
+            NotificationManager.runLocked(ids, new Runnable() {
+                @Override
+                public void run() {
+                    NotificationStore.Transaction transaction = mNotificationManager.edit();
+
+                    for (int notificationID : ids) {
+                        try {
+                            Notification n = mNotificationManager.delete(notificationID, transaction);
+
+                            results.pushMap(getBatchResult(notificationID, n));
+
+                        } catch (Exception e) {
+                            results.pushMap(getBatchError(notificationID, e));
+                            Log.e("ReactSystemNotification", "NotificationModule: rDeleteBatch Error: " + Log.getStackTraceString(e));
+                        }
+                    }
+
+                    transaction.commit();
+                }
+            });
+
+            successCallback.invoke(results);
+
+        } catch (Exception e) {
+            errorCallback.invoke(e.getMessage());
+            Log.e("ReactSystemNotification", "NotificationModule: rDeleteBatch Error: " + Log.getStackTraceString(e));
+        }
+    }
+
     /**
      * React method to delete (i.e. cancel a scheduled) notification.
      */
@@ -153,15 +320,24 @@ public class NotificationModule extends ReactContextBaseJavaModule {
         Callback successCallback
     ) {
         try {
-            ArrayList<Integer> ids = mNotificationManager.getIDs();
-
-            for (Integer id: ids) {
-                try {
-                    mNotificationManager.delete(id);
-                } catch (Exception e) {
-                    Log.e("ReactSystemNotification", "NotificationModule: rDeleteAll Error: " + Log.getStackTraceString(e));
+            final ArrayList<Integer> ids = mNotificationManager.getIDs();
+
+            NotificationManager.runLocked(ids, new Runnable() {
+                @Override
+                public void run() {
+                    NotificationStore.Transaction transaction = mNotificationManager.edit();
+
+                    for (Integer id: ids) {
+                        try {
+                            mNotificationManager.delete(id, transaction);
+                        } catch (Exception e) {
+                            Log.e("ReactSystemNotification", "NotificationModule: rDeleteAll Error: " + Log.getStackTraceString(e));
+                        }
+                    }
+
+                    transaction.commit();
                 }
-            }
+            });
 
             successCallback.invoke();
 
@@ -183,7 +359,7 @@ public class NotificationModule extends ReactContextBaseJavaModule {
         try {
             Notification n = mNotificationManager.clear(notificationID);
 
-            successCallback.invoke(n.getAttributes().asReadableMap());
+            successCallback.invoke(toWritableMap(n.getAttributes()));
 
         } catch (Exception e) {
             errorCallback.invoke(e.getMessage());
@@ -191,6 +367,45 @@ public class NotificationModule extends ReactContextBaseJavaModule {
         }
     }
 
+    /**
+     * React method to clear notifications by their ids, while holding their
+     * locks. Calls back with a result for each notification, in order.
+     */
+    @ReactMethod
+    public void rClearBatch(
+        ReadableArray notificationIDs,
+        Callback errorCallback,
+        Callback successCallback
+    ) {
+        try {
+            final ArrayList<Integer> ids = getIDs(notificationIDs);
+            final WritableArray results = new WritableNativeArray();
+
+            NotificationManager.runLocked(ids, new Runnable() {
+                @Override
+                public void run() {
+                    for (int notificationID : ids) {
+                        try {
+                            Notification n = mNotificationManager.clear(notificationID);
+
+                            results.pushMap(getBatchResult(notificationID, n));
+
+                        } catch (Exception e) {
+                            results.pushMap(getBatchError(notificationID, e));
+                            Log.e("ReactSystemNotification", "NotificationModule: rClearBatch Error: " + Log.getStackTraceString(e));
+                        }
+                    }
+                }
+            });
+
+            successCallback.invoke(results);
+
+        } catch (Exception e) {
+            errorCallback.invoke(e.getMessage());
+            Log.e("ReactSystemNotification", "NotificationModule: rClearBatch Error: " + Log.getStackTraceString(e));
+        }
+    }
+
     /**
      * React method to clear all notifications of this app.
      */
@@ -209,6 +424,159 @@ public class NotificationModule extends ReactContextBaseJavaModule {
         }
     }
 
+    /**
+     * React method to get the counters of the notification image cache.
+     */
+    @ReactMethod
+    public void rGetImageCacheStats(
+        Callback errorCallback,
+        Callback successCallback
+    ) {
+        try {
+            long[] stats = NotificationBitmapCache.getInstance(mContext).getStats();
+            WritableMap rstats = Arguments.createMap();
+
+            rstats.putDouble("memoryHits", stats[0]);
+            rstats.putDouble("diskHits", stats[1]);
+            rstats.putDouble("misses", stats[2]);
+            rstats.putDouble("revalidations", stats[3]);
+            rstats.putDouble("evictions", stats[4]);
+            rstats.putDouble("memorySize", stats[5]);
+            rstats.putDouble("memoryMaxSize", stats[6]);
+            rstats.putDouble("diskSize", stats[7]);
+
+            successCallback.invoke(rstats);
+
+        } catch (Exception e) {
+            errorCallback.invoke(e.getMessage());
+            Log.e("ReactSystemNotification", "NotificationModule: rGetImageCacheStats Error: " + Log.getStackTraceString(e));
+        }
+    }
+
+    @ReactMethod
+    public void rGetMetrics(
+        Callback errorCallback,
+        Callback successCallback
+    ) {
+        try {
+            WritableMap rtimers = Arguments.createMap();
+
+            for (Map.Entry<String, NotificationMetrics.Timer> entry : NotificationMetrics.getTimers().entrySet()) {
+                NotificationMetrics.Timer timer = entry.getValue();
+                WritableMap rtimer = Arguments.createMap();
+
+                rtimer.putDouble("count", timer.count);
+                rtimer.putDouble("meanMs", timer.count == 0 ? 0 : timer.totalMicros / 1000.0 / timer.count);
+                rtimer.putDouble("p50Ms", timer.getQuantileMicros(0.5) / 1000.0);
+                rtimer.putDouble("p95Ms", timer.getQuantileMicros(0.95) / 1000.0);
+                rtimer.putDouble("p99Ms", timer.getQuantileMicros(0.99) / 1000.0);
+                rtimer.putDouble("maxMs", timer.maxMicros / 1000.0);
+
+                WritableArray rbuckets = Arguments.createArray();
+                for (long bucket : timer.buckets) rbuckets.pushDouble(bucket);
+                rtimer.putArray("histogram", rbuckets);
+
+                rtimers.putMap(entry.getKey(), rtimer);
+            }
+
+            WritableMap rcounters = Arguments.createMap();
+
+            for (Map.Entry<String, Long> entry : NotificationMetrics.getCounters().entrySet()) {
+                rcounters.putDouble(entry.getKey(), entry.getValue());
+            }
+
+            WritableMap rmetrics = Arguments.createMap();
+            rmetrics.putMap("timers", rtimers);
+            rmetrics.putMap("counters", rcounters);
+
+            successCallback.invoke(rmetrics);
+
+        } catch (Exception e) {
+            errorCallback.invoke(e.getMessage());
+            Log.e("ReactSystemNotification", "NotificationModule: rGetMetrics Error: " + Log.getStackTraceString(e));
+        }
+    }
+
+    @ReactMethod
+    public void rSetRateLimits(
+        double perNotification,
+        double global,
+        Callback errorCallback,
+        Callback successCallback
+    ) {
+        try {
+            NotificationThrottler.setRates(perNotification, global);
+            successCallback.invoke();
+
+        } catch (Exception e) {
+            errorCallback.invoke(e.getMessage());
+            Log.e("ReactSystemNotification", "NotificationModule: rSetRateLimits Error: " + Log.getStackTraceString(e));
+        }
+    }
+
+    /**
+     * React method to delete the out-dated saved notifications now.
+     */
+    @ReactMethod
+    public void rCollectGarbage(
+        final Callback errorCallback,
+        final Callback successCallback
+    ) {
+        NotificationWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    NotificationCollector.Result result = NotificationCollector.collect(mContext);
+                    WritableMap rresult = Arguments.createMap();
+
+                    rresult.putInt("count", result.count);
+                    rresult.putDouble("bytes", result.bytes);
+
+                    successCallback.invoke(rresult);
+
+                } catch (Exception e) {
+                    errorCallback.invoke(e.getMessage());
+                    Log.e("ReactSystemNotification", "NotificationModule: rCollectGarbage Error: " + Log.getStackTraceString(e));
+                }
+            }
+        });
+    }
+
+    /**
+     * React method to set how often (in ms) to delete the out-dated saved
+     * notifications in the background, 0 to stop.
+     */
+    @ReactMethod
+    public void rSetCollectInterval(
+        double interval,
+        Callback errorCallback,
+        Callback successCallback
+    ) {
+        try {
+            NotificationCollector.setInterval(mContext, (long) interval);
+            successCallback.invoke();
+
+        } catch (Exception e) {
+            errorCallback.invoke(e.getMessage());
+            Log.e("ReactSystemNotification", "NotificationModule: rSetCollectInterval Error: " + Log.getStackTraceString(e));
+        }
+    }
+
+    @ReactMethod
+    public void rResetMetrics(
+        Callback errorCallback,
+        Callback successCallback
+    ) {
+        try {
+            NotificationMetrics.reset();
+            successCallback.invoke();
+
+        } catch (Exception e) {
+            errorCallback.invoke(e.getMessage());
+            Log.e("ReactSystemNotification", "NotificationModule: rResetMetrics Error: " + Log.getStackTraceString(e));
+        }
+    }
+
     @ReactMethod
     public void rGetApplicationName(
         Callback errorCallback,
@@ -235,7 +603,7 @@ public class NotificationModule extends ReactContextBaseJavaModule {
             .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
             .emit(eventName, params);
 
-        Log.i("ReactSystemNotification", "NotificationModule: sendEvent (to JS): " + eventName);
+        if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "NotificationModule: sendEvent (to JS): " + eventName);
     }
 
     @ReactMethod
@@ -258,6 +626,29 @@ public class NotificationModule extends ReactContextBaseJavaModule {
         }
     }
     
+    /**
+     * React method to start emitting the changes to the notifications, when
+     * the first JS change listener is added.
+     */
+    @ReactMethod
+    public void rStartChangeFeed() {
+        NotificationChangeFeed.setListener(mChangeListener);
+    }
+
+    /**
+     * React method to stop emitting the changes to the notifications, when
+     * the last JS change listener is removed.
+     */
+    @ReactMethod
+    public void rStopChangeFeed() {
+        NotificationChangeFeed.removeListener(mChangeListener);
+    }
+
+    @Override
+    public void onCatalystInstanceDestroy() {
+        NotificationChangeFeed.removeListener(mChangeListener);
+    }
+
     @ReactMethod
     public void removeInitialSysNotification() {
         final Activity activity = getCurrentActivity();
@@ -274,13 +665,80 @@ public class NotificationModule extends ReactContextBaseJavaModule {
     private NotificationAttributes getNotificationAttributesFromReadableMap(
         ReadableMap readableMap
     ) {
+        long startTime = NotificationMetrics.start();
         NotificationAttributes notificationAttributes = new NotificationAttributes();
 
         notificationAttributes.loadFromReadableMap(readableMap);
+        NotificationMetrics.record(NotificationMetrics.BIND, startTime);
 
         return notificationAttributes;
     }
 
+    /**
+     * Convert attributes to pass to JS, with their big picture read back if
+     * it has been moved out of line by NotificationImageStore.
+     */
+    private WritableMap toWritableMap(NotificationAttributes attributes) {
+        WritableMap map = (WritableMap) attributes.asReadableMap();
+
+        if (attributes.bigStyleImageBase64 == null && attributes.bigStyleImageRef != null) {
+            String base64 = NotificationImageStore.getInstance(mContext).readBase64(attributes.bigStyleImageRef);
+            if (base64 != null) map.putString("bigStyleImageBase64", base64);
+        }
+
+        return map;
+    }
+
+    private WritableMap getBatchResult(int notificationID, Notification notification) {
+        WritableMap result = Arguments.createMap();
+
+        result.putInt("id", notificationID);
+        result.putBoolean("success", true);
+        if (notification.getAttributes() != null) {
+            result.putMap("notification", toWritableMap(notification.getAttributes()));
+        }
+
+        return result;
+    }
+
+    /**
+     * The result of a failed batch item. Items are checked before any
+     * change, but a failure can still come after part of the change, e.g.
+     * a storage error, which is committed with the rest: the result carries
+     * the notification as it's saved now, none if it's not saved anymore.
+     * Must be called while holding the lock of the notification.
+     */
+    private WritableMap getBatchError(int notificationID, Exception e) {
+        WritableMap result = Arguments.createMap();
+
+        result.putInt("id", notificationID);
+        result.putBoolean("success", false);
+        result.putString("error", e.getMessage());
+
+        try {
+            NotificationAttributes saved = mNotificationManager.find(notificationID).getAttributes();
+            if (saved != null) result.putMap("notification", toWritableMap(saved));
+        } catch (Exception findException) {
+            Log.e("ReactSystemNotification", "NotificationModule: getBatchError Error: " + Log.getStackTraceString(findException));
+        }
+
+        return result;
+    }
+
+    /**
+     * Read the ids of a batch, before any change: throws if one is missing.
+     */
+    private static ArrayList<Integer> getIDs(ReadableArray notificationIDs) {
+        ArrayList<Integer> ids = new ArrayList<Integer>(notificationIDs.size());
+
+        for (int i = 0; i < notificationIDs.size(); i++) {
+            if (notificationIDs.isNull(i)) throw new IllegalArgumentException("Notification " + i + " of the batch has no id");
+            ids.add(notificationIDs.getInt(i));
+        }
+
+        return ids;
+    }
+
     private void listenNotificationEvent() {
         IntentFilter intentFilter = new IntentFilter("NotificationEvent");
 
@@ -299,4 +757,27 @@ public class NotificationModule extends ReactContextBaseJavaModule {
             }
         }, intentFilter);
     }
+
+    /**
+     * Emit the batches of changes of NotificationChangeFeed, so JS can mirror
+     * the notifications without polling.
+     */
+    private final NotificationChangeFeed.Listener mChangeListener = new NotificationChangeFeed.Listener() {
+        @Override
+        public void onChanges(List<NotificationChangeFeed.Event> events) {
+            WritableArray changes = new WritableNativeArray();
+
+            for (NotificationChangeFeed.Event event : events) {
+                WritableMap change = Arguments.createMap();
+                change.putString("type", event.type);
+                if (event.id != null) change.putInt("id", event.id);
+                if (event.attributes != null) change.putMap("notification", toWritableMap(event.attributes));
+                if (event.nextFireAt != null) change.putDouble("nextFireAt", event.nextFireAt);
+
+                changes.pushMap(change);
+            }
+
+            sendEvent("sysNotificationChanges", changes);
+        }
+    };
 }
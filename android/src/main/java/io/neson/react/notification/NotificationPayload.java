@@ -0,0 +1,65 @@
+package io.neson.react.notification;
+
+import android.support.annotation.Nullable;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * The parsed `payload` of a notification, shared by everything that reads it
+ * (renderers, the grouper, the image loader). Parse it through
+ * NotificationResources.getPayload() to reuse earlier parses.
+ *
+ * Instances are shared, callers must not modify the underlying JSON.
+ */
+public class NotificationPayload {
+    /**
+     * The `type` of the payload, selecting its renderer. Null if missing.
+     */
+    @Nullable public final String type;
+
+    /**
+     * The `avatarUrl` of the payload, used as the large icon. Null if missing.
+     */
+    @Nullable public final String avatarUrl;
+
+    private final JsonObject json;
+
+    /**
+     * Parse a payload JSON object. Throws if it's not an object.
+     */
+    public static NotificationPayload parse(String payload) {
+        return new NotificationPayload(new JsonParser().parse(payload).getAsJsonObject());
+    }
+
+    private NotificationPayload(JsonObject json) {
+        this.json = json;
+        this.type = getString(json, "type");
+        this.avatarUrl = getString(json, "avatarUrl");
+    }
+
+    /**
+     * Get a field of the payload, null if missing.
+     */
+    @Nullable
+    public JsonElement get(String name) {
+        return json.get(name);
+    }
+
+    /**
+     * Get a field of the payload as a string, null if missing or null.
+     */
+    @Nullable
+    public String getString(String name) {
+        return getString(json, name);
+    }
+
+    @Nullable
+    private static String getString(JsonObject json, String name) {
+        JsonElement value = json.get(name);
+        if (value == null || value.isJsonNull()) return null;
+
+        return value.isJsonPrimitive() ? value.getAsString() : value.toString();
+    }
+}
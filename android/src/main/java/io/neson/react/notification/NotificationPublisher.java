@@ -1,11 +1,11 @@
 package io.neson.react.notification;
 
+import android.app.AlarmManager;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 
 import java.lang.System;
-import java.util.Calendar;
 
 import io.neson.react.notification.Notification;
 import io.neson.react.notification.NotificationManager;
@@ -13,68 +13,56 @@ import io.neson.react.notification.NotificationManager;
 import android.util.Log;
 
 /**
- * Publisher for scheduled notifications.
+ * Publisher for scheduled notifications, woken up by the alarm of
+ * NotificationScheduler. Also runs the collections of NotificationCollector.
  */
 public class NotificationPublisher extends BroadcastReceiver {
     final static String NOTIFICATION_ID = "notificationId";
     final static String NOTIFICATION = "notification";
 
     @Override
-    public void onReceive(Context context, Intent intent) {
-        int id = intent.getIntExtra(NOTIFICATION_ID, 0);
-        long currentTime = System.currentTimeMillis();
-        Log.i("ReactSystemNotification", "NotificationPublisher: Prepare To Publish: " + id + ", Now Time: " + currentTime);
-
-        NotificationManager notificationManager = new NotificationManager(context);
-        Notification notification = notificationManager.find(id);
-
-        if (notification.getAttributes() != null) {
-
-            // Delete notifications that are out-dated
-            if (notification.getAttributes().endAt != null &&
-                notification.getAttributes().endAt < currentTime) {
-                notification.cancelAlarm();
-                notification.deleteFromPreferences();
-
-            // Show and delete one-time notifications
-            } else if (notification.getAttributes().repeatType == null) {
-                notification.show();
-                notification.cancelAlarm();
-                notification.deleteFromPreferences();
-
-            // Special conditions for weekly based notifications
-            } else if (notification.getAttributes().repeatType.equals("week")) {
-                Calendar calendar = Calendar.getInstance();
-                int day = calendar.get(Calendar.DAY_OF_WEEK);
-                day = day - 1;
-                if (notification.getAttributes().sendAtWeekDay == day) notification.show();
-
-            // Special conditions for monthly based notifications
-            } else if (notification.getAttributes().repeatType.equals("month")) {
-                Calendar calendar = Calendar.getInstance();
-                int day = calendar.get(Calendar.DAY_OF_MONTH);
-                if (notification.getAttributes().sendAtDay == day) notification.show();
-
-            // Special conditions for yearly based notifications
-            } else if (notification.getAttributes().repeatType.equals("year")) {
-                Calendar calendar = Calendar.getInstance();
-                int day = calendar.get(Calendar.DAY_OF_MONTH);
-                int month = calendar.get(Calendar.MONTH);
-                if (notification.getAttributes().sendAtDay == day && notification.getAttributes().sendAtMonth == month) notification.show();
-
-            // Other repeating notifications - just show them
-            } else {
-                notification.show();
+    public void onReceive(final Context context, final Intent intent) {
+        NotificationWorker.goAsync(this, new Runnable() {
+            @Override
+            public void run() {
+                publish(context, intent);
             }
+        });
+    }
 
-            if (notification.getAttributes().delayed ||
-                !notification.getAttributes().scheduled) {
-                notification.deleteFromPreferences();
-            }
+    private void publish(Context context, Intent intent) {
+        if (NotificationCollector.ACTION_COLLECT.equals(intent.getAction())) {
+            NotificationCollector.collect(context);
+            return;
+        }
 
-        } else {
-            notification.cancelAlarm();
-            notification.deleteFromPreferences();
+        // Alarm set per notification by an earlier version, hand it over to the scheduler
+        if (!NotificationScheduler.ACTION_PUBLISH.equals(intent.getAction())) {
+            int id = intent.getIntExtra(NOTIFICATION_ID, 0);
+            long currentTime = System.currentTimeMillis();
+            Log.i("ReactSystemNotification", "NotificationPublisher: Legacy Alarm For: " + id + ", Now Time: " + currentTime);
+
+            synchronized (NotificationManager.getLock(id)) {
+                NotificationAttributes attributes = NotificationAttributesCache.getHeader(context, id);
+                new Notification(context, id, attributes).cancelAlarm();
+
+                if (attributes != null) {
+                    Long fireAt = attributes.nextFireAt;
+
+                    // Day, week, month and year alarms all went off daily:
+                    // the first occurrence since the previous run is either
+                    // due now or the real next one
+                    if (fireAt == null && NotificationRecurrence.isCalendarBased(attributes)) {
+                        fireAt = NotificationRecurrence.next(attributes, currentTime - AlarmManager.INTERVAL_DAY);
+                    } else if (fireAt == null) {
+                        fireAt = currentTime;
+                    }
+
+                    if (fireAt != null) NotificationScheduler.getInstance(context).schedule(id, fireAt);
+                }
+            }
         }
+
+        NotificationScheduler.getInstance(context).publishDue();
     }
 }
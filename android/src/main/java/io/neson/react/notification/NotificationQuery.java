@@ -0,0 +1,40 @@
+package io.neson.react.notification;
+
+import com.facebook.react.bridge.ReadableMap;
+
+/**
+ * Criteria of a query over the saved notifications. Null criteria match
+ * everything. Matches are ordered by next fire time, then id.
+ */
+public class NotificationQuery {
+    public static final int DEFAULT_LIMIT = 100;
+
+    // Next fire time range (ms), the upper bound excluded
+    public Long fireAfter;
+    public Long fireBefore;
+
+    public String repeatType;
+    public String action;
+
+    // A top-level payload field and its value, as a string
+    public String payloadKey;
+    public String payloadValue;
+
+    public int offset = 0;
+    public int limit = DEFAULT_LIMIT;
+
+    public void loadFromReadableMap(ReadableMap readableMap) {
+        if (has(readableMap, "fireAfter")) fireAfter = (long) readableMap.getDouble("fireAfter");
+        if (has(readableMap, "fireBefore")) fireBefore = (long) readableMap.getDouble("fireBefore");
+        if (has(readableMap, "repeatType")) repeatType = readableMap.getString("repeatType");
+        if (has(readableMap, "action")) action = readableMap.getString("action");
+        if (has(readableMap, "payloadKey")) payloadKey = readableMap.getString("payloadKey");
+        if (has(readableMap, "payloadValue")) payloadValue = readableMap.getString("payloadValue");
+        if (has(readableMap, "offset")) offset = Math.max(0, readableMap.getInt("offset"));
+        if (has(readableMap, "limit")) limit = Math.max(0, readableMap.getInt("limit"));
+    }
+
+    private static boolean has(ReadableMap readableMap, String name) {
+        return readableMap.hasKey(name) && !readableMap.isNull(name);
+    }
+}
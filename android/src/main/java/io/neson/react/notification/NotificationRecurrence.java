@@ -0,0 +1,141 @@
+package io.neson.react.notification;
+
+import android.app.AlarmManager;
+
+import java.util.Calendar;
+
+/**
+ * Computes when a scheduled notification fires next.
+ *
+ * Fixed intervals (time, minute, hour, halfDay) are counted from sendAt. Day,
+ * week, month and year repeats fire at the local time of day of sendAt in the
+ * current time zone, so they keep their wall-clock time across DST and time
+ * zone changes. Monthly and yearly repeats on a day the month doesn't have
+ * fire on its last day instead.
+ */
+public class NotificationRecurrence {
+
+    /**
+     * Get the first fire time of a scheduled notification after the given
+     * time. One-time notifications fire at sendAt even if it has passed.
+     * Returns null if the notification is not scheduled.
+     */
+    public static Long next(NotificationAttributes attributes, long after) {
+        if (attributes.scheduled == null || !attributes.scheduled || attributes.sendAt == null) return null;
+
+        long sendAt = attributes.sendAt;
+        String repeatType = attributes.repeatType;
+
+        if (repeatType == null || sendAt > after) return sendAt;
+
+        switch (repeatType) {
+            case "time":
+                if (attributes.repeatTime == null || attributes.repeatTime <= 0) return null;
+                return nextInterval(sendAt, attributes.repeatTime, after);
+
+            case "minute":
+                return nextInterval(sendAt, 60000, after);
+
+            case "hour":
+                return nextInterval(sendAt, AlarmManager.INTERVAL_HOUR, after);
+
+            case "halfDay":
+                return nextInterval(sendAt, AlarmManager.INTERVAL_HALF_DAY, after);
+
+            case "day":
+            case "week":
+            case "month":
+            case "year":
+                return nextCalendar(attributes, repeatType, after);
+
+            default:
+                return sendAt;
+        }
+    }
+
+    /**
+     * Whether the notification repeats at a local time of day, which moves
+     * when the time zone changes.
+     */
+    public static boolean isCalendarBased(NotificationAttributes attributes) {
+        String repeatType = attributes.repeatType;
+        return "day".equals(repeatType) || "week".equals(repeatType) ||
+            "month".equals(repeatType) || "year".equals(repeatType);
+    }
+
+    private static long nextInterval(long sendAt, long interval, long after) {
+        return sendAt + ((after - sendAt) / interval + 1) * interval;
+    }
+
+    private static long nextCalendar(NotificationAttributes attributes, String repeatType, long after) {
+        Calendar sendAtCalendar = Calendar.getInstance();
+        sendAtCalendar.setTimeInMillis(attributes.sendAt);
+
+        // The unfolded fields hold the local date of sendAt where it was created
+        int hour = attributes.sendAtHour != null ? attributes.sendAtHour : sendAtCalendar.get(Calendar.HOUR_OF_DAY);
+        int minute = attributes.sendAtMinute != null ? attributes.sendAtMinute : sendAtCalendar.get(Calendar.MINUTE);
+        int millis = (int) (attributes.sendAt % 60000);
+        int weekDay = attributes.sendAtWeekDay != null ? attributes.sendAtWeekDay + 1 : sendAtCalendar.get(Calendar.DAY_OF_WEEK);
+        int day = attributes.sendAtDay != null ? attributes.sendAtDay : sendAtCalendar.get(Calendar.DAY_OF_MONTH);
+        int month = attributes.sendAtMonth != null ? attributes.sendAtMonth - 1 : sendAtCalendar.get(Calendar.MONTH);
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(after);
+
+        // Try the period containing `after` first, then the following one
+        for (int i = 0; i < 3; i++) {
+            switch (repeatType) {
+                case "day":
+                    break;
+
+                case "week":
+                    int offset = weekDay - calendar.get(Calendar.DAY_OF_WEEK);
+                    if (offset < 0) offset += 7;
+                    calendar.add(Calendar.DAY_OF_MONTH, offset);
+                    break;
+
+                case "month":
+                    calendar.set(Calendar.DAY_OF_MONTH, 1);
+                    calendar.set(Calendar.DAY_OF_MONTH, Math.min(day, calendar.getActualMaximum(Calendar.DAY_OF_MONTH)));
+                    break;
+
+                case "year":
+                    calendar.set(Calendar.DAY_OF_MONTH, 1);
+                    calendar.set(Calendar.MONTH, month);
+                    calendar.set(Calendar.DAY_OF_MONTH, Math.min(day, calendar.getActualMaximum(Calendar.DAY_OF_MONTH)));
+                    break;
+            }
+
+            calendar.set(Calendar.HOUR_OF_DAY, hour);
+            calendar.set(Calendar.MINUTE, minute);
+            calendar.set(Calendar.SECOND, millis / 1000);
+            calendar.set(Calendar.MILLISECOND, millis % 1000);
+
+            long candidate = calendar.getTimeInMillis();
+            if (candidate > after) return candidate;
+
+            switch (repeatType) {
+                case "day":
+                    calendar.add(Calendar.DAY_OF_MONTH, 1);
+                    break;
+
+                case "week":
+                    calendar.add(Calendar.DAY_OF_MONTH, 7);
+                    break;
+
+                case "month":
+                    calendar.set(Calendar.DAY_OF_MONTH, 1);
+                    calendar.add(Calendar.MONTH, 1);
+                    break;
+
+                case "year":
+                    calendar.set(Calendar.DAY_OF_MONTH, 1);
+                    calendar.add(Calendar.YEAR, 1);
+                    break;
+            }
+        }
+
+        // Only reached if the clock is set to a time that doesn't exist
+        return after + AlarmManager.INTERVAL_DAY;
+    }
+}
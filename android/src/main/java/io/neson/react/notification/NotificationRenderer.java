@@ -0,0 +1,18 @@
+package io.neson.react.notification;
+
+import android.support.v7.app.NotificationCompat;
+
+/**
+ * Renders the notifications of a payload type.
+ *
+ * Renderers are registered by type with NotificationRenderers. They get a
+ * builder with the common attributes (title, message, icons, style, sound,
+ * ...) already applied, add what is specific to their type and build it.
+ */
+public interface NotificationRenderer {
+    /**
+     * Add the type specific part of the notification and build it. Called on
+     * background threads, must not keep state between calls.
+     */
+    android.app.Notification render(Notification notification, NotificationPayload payload, NotificationCompat.Builder builder);
+}
@@ -0,0 +1,54 @@
+package io.neson.react.notification;
+
+import android.support.annotation.Nullable;
+import android.support.v7.app.NotificationCompat;
+
+import java.util.HashMap;
+
+/**
+ * Registry of the notification renderers, by payload type.
+ *
+ * Payload types without a renderer of their own are rendered by the default
+ * renderer, which builds the common attributes as they are. Register custom
+ * renderers with register(), e.g. in the constructor of the app's
+ * ReactPackage.
+ */
+public class NotificationRenderers {
+    public static final NotificationRenderer DEFAULT = new NotificationRenderer() {
+        @Override
+        public android.app.Notification render(Notification notification, NotificationPayload payload, NotificationCompat.Builder builder) {
+            return builder.build();
+        }
+    };
+
+    private static final HashMap<String, NotificationRenderer> renderers = new HashMap<String, NotificationRenderer>();
+
+    static {
+        renderers.put(CallNotificationRenderer.TYPE, new CallNotificationRenderer());
+    }
+
+    /**
+     * Render the notifications of a payload type with the given renderer,
+     * replacing the one registered before. Pass null to fall back to the
+     * default renderer.
+     */
+    public static void register(String type, @Nullable NotificationRenderer renderer) {
+        synchronized (renderers) {
+            if (renderer == null) renderers.remove(type);
+            else renderers.put(type, renderer);
+        }
+    }
+
+    /**
+     * Get the renderer of a payload type.
+     */
+    public static NotificationRenderer get(@Nullable String type) {
+        NotificationRenderer renderer;
+
+        synchronized (renderers) {
+            renderer = renderers.get(type);
+        }
+
+        return renderer == null ? DEFAULT : renderer;
+    }
+}
@@ -0,0 +1,137 @@
+package io.neson.react.notification;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Color;
+import android.net.Uri;
+import android.util.LruCache;
+
+import java.util.HashMap;
+
+/**
+ * Per-process cache of what building a notification resolves over and over:
+ * resource ids, colors, sound URIs, parsed payloads and pending intents.
+ *
+ * Cached payloads are shared, callers must not modify them.
+ */
+public class NotificationResources {
+    private static final int MAX_PAYLOADS = 64;
+    private static final int MAX_PENDING_INTENTS = 128;
+
+    private static NotificationResources instance = null;
+
+    private final Context context;
+    private final HashMap<String, Integer> identifiers = new HashMap<String, Integer>();
+    private final HashMap<String, Integer> colors = new HashMap<String, Integer>();
+    private final HashMap<String, Uri> uris = new HashMap<String, Uri>();
+    private final LruCache<String, NotificationPayload> payloads = new LruCache<String, NotificationPayload>(MAX_PAYLOADS);
+    private final LruCache<String, CachedIntent> pendingIntents = new LruCache<String, CachedIntent>(MAX_PENDING_INTENTS);
+
+    /**
+     * Get the resources of the application.
+     */
+    public static synchronized NotificationResources getInstance(Context context) {
+        if (instance == null) instance = new NotificationResources(context.getApplicationContext());
+        return instance;
+    }
+
+    private NotificationResources(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Get the id of an app resource, 0 if there is none.
+     */
+    public synchronized int getIdentifier(String name, String type) {
+        String key = type + "/" + name;
+        Integer identifier = identifiers.get(key);
+
+        if (identifier == null) {
+            identifier = context.getResources().getIdentifier(name, type, context.getPackageName());
+            identifiers.put(key, identifier);
+        }
+
+        return identifier;
+    }
+
+    /**
+     * Parse a color string, as Color.parseColor.
+     */
+    public synchronized int getColor(String color) {
+        Integer parsed = colors.get(color);
+
+        if (parsed == null) {
+            parsed = Color.parseColor(color);
+            colors.put(color, parsed);
+        }
+
+        return parsed;
+    }
+
+    /**
+     * Parse a URI string, as Uri.parse.
+     */
+    public synchronized Uri getUri(String uri) {
+        Uri parsed = uris.get(uri);
+
+        if (parsed == null) {
+            parsed = Uri.parse(uri);
+            uris.put(uri, parsed);
+        }
+
+        return parsed;
+    }
+
+    /**
+     * Parse a payload JSON object. Throws if it's not an object.
+     */
+    public NotificationPayload getPayload(String payload) {
+        NotificationPayload parsed = payloads.get(payload);
+
+        if (parsed == null) {
+            parsed = NotificationPayload.parse(payload);
+            payloads.put(payload, parsed);
+        }
+
+        return parsed;
+    }
+
+    /**
+     * Get the broadcast PendingIntent of a kind (content, call, ...) for a
+     * notification, reusing the one made earlier if its extras are the same.
+     * The extras argument must cover everything that varies in the intent.
+     */
+    public PendingIntent getBroadcast(String kind, int id, String extras, Intent intent) {
+        String key = kind + ":" + id;
+        CachedIntent cached = pendingIntents.get(key);
+        if (cached != null && cached.extras.equals(extras)) return cached.pendingIntent;
+
+        // Updates the extras of the system's intent, the cached one goes stale
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, id, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+        pendingIntents.put(key, new CachedIntent(extras, pendingIntent));
+
+        return pendingIntent;
+    }
+
+    /**
+     * Forget the pending intents of a notification, e.g. once deleted.
+     */
+    public void removePendingIntents(int id) {
+        String suffix = ":" + id;
+
+        for (String key : pendingIntents.snapshot().keySet()) {
+            if (key.endsWith(suffix)) pendingIntents.remove(key);
+        }
+    }
+
+    private static class CachedIntent {
+        final String extras;
+        final PendingIntent pendingIntent;
+
+        CachedIntent(String extras, PendingIntent pendingIntent) {
+            this.extras = extras;
+            this.pendingIntent = pendingIntent;
+        }
+    }
+}
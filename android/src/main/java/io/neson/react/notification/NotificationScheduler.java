@@ -0,0 +1,486 @@
+package io.neson.react.notification;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.v7.app.NotificationCompat;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import android.util.Log;
+
+/**
+ * Process-wide scheduler of the delayed and scheduled notifications.
+ *
+ * Keeps every pending notification in a min-heap ordered by its next fire
+ * time and arms a single alarm for the earliest one. When it goes off, all
+ * due notifications are published in the same wake-up, repeating ones are
+ * moved to their next occurrence and the alarm is re-armed. The next fire
+ * time of each notification is persisted in its attributes, so the queue is
+ * rebuilt from the cache when the process starts again.
+ */
+public class NotificationScheduler {
+    final static String ACTION_PUBLISH = "io.neson.react.notification.PUBLISH";
+
+    // Notification id of the summary of notifications missed while the device was off
+    private static final int MISSED_SUMMARY_ID = NotificationManager.RESERVED_ID_MIN;
+    private static final int MISSED_SUMMARY_MAX_LINES = 5;
+
+    private static NotificationScheduler instance = null;
+
+    private final Context context;
+    private final PriorityQueue<Entry> queue = new PriorityQueue<Entry>(16, new Comparator<Entry>() {
+        @Override
+        public int compare(Entry lhs, Entry rhs) {
+            return lhs.fireAt < rhs.fireAt ? -1 : (lhs.fireAt == rhs.fireAt ? 0 : 1);
+        }
+    });
+
+    // The live entry of each id, queued entries not found here are stale
+    private final SparseArray<Entry> entriesByID = new SparseArray<Entry>();
+    private boolean loaded = false;
+    private long armedAt = -1;
+
+    /**
+     * Get the scheduler of the application.
+     */
+    public static synchronized NotificationScheduler getInstance(Context context) {
+        if (instance == null) instance = new NotificationScheduler(context.getApplicationContext());
+        return instance;
+    }
+
+    private NotificationScheduler(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Queue a notification to be published at the given time, replacing any
+     * earlier schedule of it, and re-arm the alarm if it's now the earliest.
+     */
+    public synchronized void schedule(int id, long fireAt) {
+        load();
+        enqueue(id, fireAt);
+        arm();
+    }
+
+    /**
+     * Remove a notification from the queue.
+     */
+    public synchronized void unschedule(int id) {
+        load();
+        if (entriesByID.get(id) == null) return;
+
+        entriesByID.remove(id);
+        purge();
+        arm();
+    }
+
+    /**
+     * Get when a notification is queued to be published next, null if it's
+     * not queued.
+     */
+    public synchronized Long getFireAt(int id) {
+        load();
+        Entry entry = entriesByID.get(id);
+
+        return entry == null ? null : entry.fireAt;
+    }
+
+    /**
+     * Publish all due notifications, then re-arm the alarm for the next one.
+     * Called by NotificationPublisher when the alarm goes off.
+     *
+     * Publishing changes the notifications, so it holds their locks, taken
+     * before the scheduler's own like any other operation on them does. It
+     * then waits for a create or an update that scheduled a notification to
+     * commit it, instead of firing it before it's saved.
+     */
+    public void publishDue() {
+        final long startTime = NotificationMetrics.start();
+        final long now = System.currentTimeMillis();
+        final ArrayList<Integer> dueIDs = getDueIDs(now);
+
+        NotificationManager.runLocked(dueIDs, new Runnable() {
+            @Override
+            public void run() {
+                publishDue(dueIDs, now, startTime);
+            }
+        });
+    }
+
+    /**
+     * Get the ids of the due notifications. They stay queued until
+     * published.
+     */
+    private synchronized ArrayList<Integer> getDueIDs(long now) {
+        load();
+
+        ArrayList<Entry> dueEntries = new ArrayList<Entry>();
+        ArrayList<Integer> dueIDs = new ArrayList<Integer>();
+
+        Entry entry;
+        while ((entry = peek()) != null && entry.fireAt <= now) {
+            dueEntries.add(queue.poll());
+            dueIDs.add(entry.id);
+        }
+
+        queue.addAll(dueEntries);
+
+        return dueIDs;
+    }
+
+    /**
+     * Publish the given notifications that are still due. Must be called
+     * while holding their locks.
+     */
+    private synchronized void publishDue(ArrayList<Integer> dueIDs, long now, long startTime) {
+        NotificationStore.Transaction transaction = NotificationManager.getStore(context).edit();
+        int published = 0;
+
+        for (Integer id : dueIDs) {
+            // Rescheduled, deleted or published since
+            Entry entry = entriesByID.get(id);
+            if (entry == null || entry.fireAt > now) continue;
+
+            entriesByID.remove(id);
+            published++;
+
+            try {
+                publish(id, now, transaction);
+            } catch (Exception e) {
+                Log.e("ReactSystemNotification", "NotificationScheduler: publish Error: " + Log.getStackTraceString(e));
+            }
+        }
+
+        if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "NotificationScheduler: Published " + published + " due notifications, Now Time: " + now);
+
+        transaction.commit();
+
+        armedAt = -1;
+        arm();
+
+        NotificationMetrics.increment(NotificationMetrics.PUBLISHED, published);
+        NotificationMetrics.record(NotificationMetrics.PUBLISH, startTime);
+    }
+
+    /**
+     * Restore the schedule after a reboot, when all alarms are gone.
+     *
+     * The saved notifications are loaded once. Out-dated ones are deleted in
+     * a single transaction, one-time notifications missed while the device
+     * was off are shown together in one summary, and the alarm is armed for
+     * the next one. Nothing else is written, the saved fire times still hold.
+     */
+    public void restore() {
+        long startTime = NotificationMetrics.start();
+
+        NotificationManager.runLockedAll(new Runnable() {
+            @Override
+            public void run() {
+                restoreLocked();
+            }
+        });
+
+        // Repeating notifications that came due while the device was off
+        publishDue();
+
+        NotificationMetrics.record(NotificationMetrics.BOOT_RESTORE, startTime);
+    }
+
+    /**
+     * Must be called while holding the locks of all ids.
+     */
+    private synchronized void restoreLocked() {
+        long startTime = SystemClock.elapsedRealtime();
+
+        load();
+
+        long loadedTime = SystemClock.elapsedRealtime();
+        long now = System.currentTimeMillis();
+        NotificationStore.Transaction transaction = NotificationManager.getStore(context).edit();
+        ArrayList<Notification> missed = new ArrayList<Notification>();
+        int expired = 0;
+
+        for (int i = entriesByID.size() - 1; i >= 0; i--) {
+            Entry entry = entriesByID.valueAt(i);
+            NotificationAttributes header = NotificationAttributesCache.getHeader(context, entry.id);
+
+            if (header == null) {
+                entriesByID.removeAt(i);
+
+            } else if (header.endAt != null && header.endAt < now) {
+                entriesByID.removeAt(i);
+                new Notification(context, entry.id, header).deleteFromPreferences(transaction);
+                NotificationChangeFeed.expired(entry.id);
+                expired++;
+
+            } else if (entry.fireAt <= now && isOneTime(header)) {
+                // Shown, so it needs all its attributes
+                Notification notification = new Notification(context, entry.id, NotificationAttributesCache.get(context, entry.id));
+                entriesByID.removeAt(i);
+                notification.deleteFromPreferences(transaction);
+                NotificationChangeFeed.fired(entry.id, null);
+                NotificationChangeFeed.deleted(entry.id);
+                missed.add(notification);
+            }
+        }
+
+        transaction.commit();
+
+        if (missed.size() == 1) {
+            missed.get(0).show();
+        } else if (missed.size() > 1) {
+            showMissedSummary(missed);
+        }
+
+        purge();
+        armedAt = -1;
+        arm();
+
+        Log.i("ReactSystemNotification", "NotificationScheduler: Restored " + entriesByID.size() + " notifications" +
+            ", Expired: " + expired + ", Missed: " + missed.size() +
+            ", Load Time: " + (loadedTime - startTime) + "ms" +
+            ", Total Time: " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+
+        NotificationMetrics.increment(NotificationMetrics.EXPIRED, expired);
+        NotificationMetrics.increment(NotificationMetrics.MISSED, missed.size());
+    }
+
+    /**
+     * Recompute the upcoming occurrences of notifications repeating at a
+     * local time of day, after the time zone or the clock has changed.
+     * Notifications that became due are published.
+     */
+    public void onTimeChanged() {
+        NotificationManager.runLockedAll(new Runnable() {
+            @Override
+            public void run() {
+                rescheduleLocked();
+            }
+        });
+
+        publishDue();
+    }
+
+    /**
+     * Must be called while holding the locks of all ids.
+     */
+    private synchronized void rescheduleLocked() {
+        load();
+
+        long now = System.currentTimeMillis();
+        NotificationStore.Transaction transaction = NotificationManager.getStore(context).edit();
+        int rescheduled = 0;
+
+        for (int i = entriesByID.size() - 1; i >= 0; i--) {
+            Entry entry = entriesByID.valueAt(i);
+            if (entry.fireAt <= now) continue;
+
+            NotificationAttributes header = NotificationAttributesCache.getHeader(context, entry.id);
+            if (header == null || !NotificationRecurrence.isCalendarBased(header)) continue;
+
+            Long nextFireAt = NotificationRecurrence.next(header, now);
+            if (nextFireAt == null || nextFireAt == entry.fireAt) continue;
+
+            // Saved again, so it needs all its attributes. A copy, so readers
+            // of the cache never see it change
+            NotificationAttributes attributes = NotificationAttributesCache.get(context, entry.id).copy();
+            attributes.nextFireAt = nextFireAt;
+            new Notification(context, entry.id, attributes).saveAttributesToPreferences(transaction);
+            NotificationChangeFeed.updated(entry.id, attributes);
+            enqueue(entry.id, nextFireAt);
+            rescheduled++;
+        }
+
+        transaction.commit();
+
+        Log.i("ReactSystemNotification", "NotificationScheduler: Time Changed, Rescheduled " + rescheduled + " notifications");
+    }
+
+    /**
+     * Show a due notification and either queue its next occurrence or delete
+     * it. Must be called while holding the lock and the one of the id.
+     */
+    private void publish(int id, long now, NotificationStore.Transaction transaction) {
+        NotificationAttributes header = NotificationAttributesCache.getHeader(context, id);
+        if (header == null) return;
+
+        // Delete notifications that are out-dated, without decoding them
+        if (header.endAt != null && header.endAt < now) {
+            new Notification(context, id, header).deleteFromPreferences(transaction);
+            NotificationChangeFeed.expired(id);
+            return;
+        }
+
+        NotificationAttributes attributes = NotificationAttributesCache.get(context, id).copy();
+        Notification notification = new Notification(context, id, attributes);
+
+        notification.show();
+
+        Long nextFireAt = attributes.delayed != null && attributes.delayed ? null : NotificationRecurrence.next(attributes, now);
+
+        if (nextFireAt == null || nextFireAt <= now || (attributes.endAt != null && nextFireAt > attributes.endAt)) {
+            notification.deleteFromPreferences(transaction);
+            NotificationChangeFeed.fired(id, null);
+            NotificationChangeFeed.deleted(id);
+        } else {
+            attributes.nextFireAt = nextFireAt;
+            notification.saveAttributesToPreferences(transaction);
+            enqueue(id, nextFireAt);
+            NotificationChangeFeed.fired(id, nextFireAt);
+        }
+    }
+
+    private static boolean isOneTime(NotificationAttributes attributes) {
+        return (attributes.delayed != null && attributes.delayed) || attributes.repeatType == null;
+    }
+
+    /**
+     * Show missed notifications collapsed into a single one, opening the app.
+     */
+    private void showMissedSummary(ArrayList<Notification> missed) {
+        NotificationCompat.InboxStyle inboxStyle = new NotificationCompat.InboxStyle();
+
+        for (int i = 0; i < missed.size() && i < MISSED_SUMMARY_MAX_LINES; i++) {
+            NotificationAttributes attributes = missed.get(i).getAttributes();
+            inboxStyle.addLine(attributes.subject != null ? attributes.subject + ": " + attributes.message : attributes.message);
+        }
+
+        if (missed.size() > MISSED_SUMMARY_MAX_LINES) {
+            inboxStyle.setSummaryText("+" + (missed.size() - MISSED_SUMMARY_MAX_LINES) + " more");
+        }
+
+        String title = missed.size() + " missed notifications";
+        inboxStyle.setBigContentTitle(title);
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context)
+            .setSmallIcon(NotificationResources.getInstance(context).getIdentifier("ic_launcher", "mipmap"))
+            .setContentTitle(title)
+            .setContentText(missed.get(0).getAttributes().message)
+            .setNumber(missed.size())
+            .setStyle(inboxStyle)
+            .setAutoCancel(true);
+
+        Intent launchIntent = context.getPackageManager().getLaunchIntentForPackage(context.getPackageName());
+        if (launchIntent != null) {
+            builder.setContentIntent(PendingIntent.getActivity(context, MISSED_SUMMARY_ID, launchIntent, PendingIntent.FLAG_UPDATE_CURRENT));
+        }
+
+        NotificationThrottler.notifyNow(context, MISSED_SUMMARY_ID, builder.build());
+    }
+
+    /**
+     * Build the queue from the saved notifications on first use. Must be
+     * called while holding the lock.
+     */
+    private void load() {
+        if (loaded) return;
+        loaded = true;
+
+        long now = System.currentTimeMillis();
+
+        for (Integer id : NotificationAttributesCache.getIDs(context)) {
+            NotificationAttributes attributes = NotificationAttributesCache.getHeader(context, id);
+            if (attributes == null) continue;
+
+            Long fireAt = attributes.nextFireAt;
+
+            // Saved by an earlier version which armed an alarm per notification
+            if (fireAt == null) {
+                if (attributes.delayed != null && attributes.delayed) {
+                    fireAt = now + attributes.delay;
+                } else {
+                    fireAt = NotificationRecurrence.next(attributes, now);
+                }
+            }
+
+            if (fireAt != null) enqueue(id, fireAt);
+        }
+
+        Log.i("ReactSystemNotification", "NotificationScheduler: Loaded " + entriesByID.size() + " scheduled notifications");
+    }
+
+    private void enqueue(int id, long fireAt) {
+        Entry entry = new Entry(id, fireAt);
+        entriesByID.put(id, entry);
+        queue.add(entry);
+        purge();
+    }
+
+    /**
+     * Drop stale entries once they outnumber the live ones, so rescheduling
+     * the same notifications over and over doesn't grow the queue.
+     */
+    private void purge() {
+        if (queue.size() <= 2 * entriesByID.size() + 16) return;
+
+        queue.clear();
+        for (int i = 0; i < entriesByID.size(); i++) {
+            queue.add(entriesByID.valueAt(i));
+        }
+    }
+
+    /**
+     * The earliest live entry, dropping stale ones on the way.
+     */
+    private Entry peek() {
+        Entry entry;
+        while ((entry = queue.peek()) != null && entriesByID.get(entry.id) != entry) {
+            queue.poll();
+        }
+        return entry;
+    }
+
+    /**
+     * Set the alarm for the earliest entry, or cancel it if there is none.
+     * Nothing is done if it's already set for that time.
+     */
+    private void arm() {
+        Entry entry = peek();
+        long fireAt = entry == null ? -1 : entry.fireAt;
+        if (fireAt == armedAt) return;
+
+        long startTime = NotificationMetrics.start();
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        PendingIntent pendingIntent = getPublishIntent();
+
+        if (entry == null) {
+            alarmManager.cancel(pendingIntent);
+            if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "NotificationScheduler: Alarm Canceled");
+
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            alarmManager.setExact(AlarmManager.RTC_WAKEUP, fireAt, pendingIntent);
+            if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "NotificationScheduler: Alarm Set At: " + fireAt + ", For: " + entry.id);
+
+        } else {
+            alarmManager.set(AlarmManager.RTC_WAKEUP, fireAt, pendingIntent);
+            if (NotificationMetrics.DEBUG) Log.d("ReactSystemNotification", "NotificationScheduler: Alarm Set At: " + fireAt + ", For: " + entry.id);
+        }
+
+        armedAt = fireAt;
+        NotificationMetrics.record(NotificationMetrics.ALARM_ARM, startTime);
+    }
+
+    private PendingIntent getPublishIntent() {
+        Intent intent = new Intent(context, NotificationPublisher.class);
+        intent.setAction(ACTION_PUBLISH);
+
+        return PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    private static class Entry {
+        final int id;
+        final long fireAt;
+
+        Entry(int id, long fireAt) {
+            this.id = id;
+            this.fireAt = fireAt;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.neson.react.notification;
+
+import android.util.SparseArray;
+
+/**
+ * Persistent storage of the scheduled notifications.
+ *
+ * Implementations must be thread-safe. Reads are served by
+ * NotificationAttributesCache, so a store is only loaded once per process.
+ */
+public interface NotificationStore {
+
+    /**
+     * Load all stored notifications, by id.
+     */
+    SparseArray<NotificationAttributes> loadAll();
+
+    /**
+     * Load all stored notifications as binary records of
+     * NotificationAttributesCodec, by id, to be decoded lazily.
+     */
+    SparseArray<byte[]> loadAllRecords();
+
+    /**
+     * Start a transaction. Changes are written when it is committed.
+     */
+    Transaction edit();
+
+    /**
+     * A set of changes written to the store at once.
+     */
+    interface Transaction {
+
+        /**
+         * Save the attributes of a notification.
+         */
+        Transaction put(int id, NotificationAttributes attributes);
+
+        /**
+         * Delete a notification.
+         */
+        Transaction remove(int id);
+
+        /**
+         * Write the changes. Does nothing if there are none.
+         */
+        void commit();
+    }
+}
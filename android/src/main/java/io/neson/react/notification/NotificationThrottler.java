@@ -0,0 +1,218 @@
+package io.neson.react.notification;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Rate limiter in front of the system NotificationManager.notify().
+ *
+ * Android silently drops notification updates posted faster than a few per
+ * second. Posts are spaced by a minimum interval per id and globally; a post
+ * that comes too early is held back and replaced by any newer post for the
+ * same id, so the latest state is always delivered, just slightly later.
+ *
+ * The module's own summaries (the missed notifications and the groups) are
+ * posted at most once per group window or boot, they go out right away with
+ * notifyNow() and only push back the posts after them.
+ */
+public class NotificationThrottler {
+    public static final double DEFAULT_RATE_PER_ID = 4;
+    public static final double DEFAULT_GLOBAL_RATE = 5;
+
+    private static final Object lock = new Object();
+    private static long idInterval = intervalOf(DEFAULT_RATE_PER_ID);
+    private static long globalInterval = intervalOf(DEFAULT_GLOBAL_RATE);
+
+    private static final SparseArray<Long> lastPostedAt = new SparseArray<Long>();
+    private static long lastGlobalPostedAt = Long.MIN_VALUE / 2;
+
+    // Held back posts by id, in arrival order so no id starves
+    private static final LinkedHashMap<Integer, android.app.Notification> pending = new LinkedHashMap<Integer, android.app.Notification>();
+    private static android.app.NotificationManager notificationManager = null;
+    private static Handler handler = null;
+    private static boolean flushScheduled = false;
+    private static long flushScheduledAt = 0;
+
+    // Prune the last post times of the ids once there are this many
+    private static final int PRUNE_SIZE = 32;
+
+    private static final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (lock) {
+                flushScheduled = false;
+                flush();
+            }
+        }
+    };
+
+    /**
+     * Set the maximum number of posts per second for each notification id
+     * and for all of them, 0 for no limit. A negative rate leaves that limit
+     * unchanged.
+     */
+    public static void setRates(double perID, double global) {
+        synchronized (lock) {
+            if (perID >= 0) idInterval = intervalOf(perID);
+            if (global >= 0) globalInterval = intervalOf(global);
+        }
+    }
+
+    /**
+     * Post a notification now, or as soon as the rate limits allow.
+     */
+    public static void notify(Context context, int id, android.app.Notification notification) {
+        synchronized (lock) {
+            if (notificationManager == null) {
+                notificationManager = (android.app.NotificationManager) context.getApplicationContext().getSystemService(Context.NOTIFICATION_SERVICE);
+            }
+
+            long now = SystemClock.uptimeMillis();
+
+            // Only held back posts of the same id, or the limits, hold it back
+            if (!pending.containsKey(id)) {
+                flush();
+                if (readyAt(id) <= now) {
+                    post(id, notification, now);
+                    return;
+                }
+            }
+
+            if (pending.put(id, notification) != null) {
+                NotificationMetrics.increment(NotificationMetrics.NOTIFY_MERGED, 1);
+            } else {
+                NotificationMetrics.increment(NotificationMetrics.NOTIFY_DELAYED, 1);
+            }
+
+            flush();
+        }
+    }
+
+    /**
+     * Post a notification of the module right away, replacing its held back
+     * post if any. The posts after it are spaced from it as usual.
+     */
+    public static void notifyNow(Context context, int id, android.app.Notification notification) {
+        synchronized (lock) {
+            if (notificationManager == null) {
+                notificationManager = (android.app.NotificationManager) context.getApplicationContext().getSystemService(Context.NOTIFICATION_SERVICE);
+            }
+
+            if (pending.remove(id) != null) {
+                NotificationMetrics.increment(NotificationMetrics.NOTIFY_MERGED, 1);
+            }
+
+            post(id, notification, SystemClock.uptimeMillis());
+        }
+    }
+
+    /**
+     * Drop the held back post of a notification, if any.
+     */
+    public static void cancel(int id) {
+        synchronized (lock) {
+            if (pending.remove(id) != null) {
+                NotificationMetrics.increment(NotificationMetrics.NOTIFY_DROPPED, 1);
+            }
+            lastPostedAt.remove(id);
+        }
+    }
+
+    /**
+     * Drop all held back posts.
+     */
+    public static void cancelAll() {
+        synchronized (lock) {
+            NotificationMetrics.increment(NotificationMetrics.NOTIFY_DROPPED, pending.size());
+            pending.clear();
+            lastPostedAt.clear();
+        }
+    }
+
+    /**
+     * Post the held back notifications the limits allow, and schedule the
+     * next flush. Must be called while holding the lock.
+     */
+    private static void flush() {
+        long now = SystemClock.uptimeMillis();
+        long nextFlushAt = Long.MAX_VALUE;
+
+        Iterator<Integer> ids = pending.keySet().iterator();
+
+        while (ids.hasNext()) {
+            int id = ids.next();
+            long readyAt = readyAt(id);
+
+            if (readyAt <= now) {
+                post(id, pending.get(id), now);
+                ids.remove();
+            } else {
+                nextFlushAt = Math.min(nextFlushAt, readyAt);
+            }
+        }
+
+        // Posting may have pushed back the global limit
+        nextFlushAt = Math.max(nextFlushAt, lastGlobalPostedAt + globalInterval);
+
+        if (pending.isEmpty()) return;
+
+        // A post held back by the global limit only may be due before the
+        // scheduled flush
+        if (flushScheduled && nextFlushAt < flushScheduledAt) {
+            getHandler().removeCallbacks(flush);
+            flushScheduled = false;
+        }
+
+        if (!flushScheduled) {
+            flushScheduled = true;
+            flushScheduledAt = nextFlushAt;
+            getHandler().postAtTime(flush, nextFlushAt);
+        }
+    }
+
+    private static long readyAt(int id) {
+        Long postedAt = lastPostedAt.get(id);
+        long idReadyAt = postedAt == null ? Long.MIN_VALUE : postedAt + idInterval;
+
+        return Math.max(idReadyAt, lastGlobalPostedAt + globalInterval);
+    }
+
+    private static void post(int id, android.app.Notification notification, long now) {
+        if (lastPostedAt.size() >= PRUNE_SIZE) prune(now);
+
+        lastPostedAt.put(id, now);
+        lastGlobalPostedAt = now;
+
+        notificationManager.notify(id, notification);
+    }
+
+    /**
+     * Forget the last post times that no longer hold back their id, e.g. of
+     * the random ids of push messages.
+     */
+    private static void prune(long now) {
+        for (int i = lastPostedAt.size() - 1; i >= 0; i--) {
+            if (lastPostedAt.valueAt(i) + idInterval <= now) lastPostedAt.removeAt(i);
+        }
+    }
+
+    private static long intervalOf(double rate) {
+        return rate > 0 ? (long) Math.ceil(1000 / rate) : 0;
+    }
+
+    private static Handler getHandler() {
+        if (handler == null) {
+            HandlerThread thread = new HandlerThread("NotificationThrottler", Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        return handler;
+    }
+}
@@ -0,0 +1,99 @@
+package io.neson.react.notification;
+
+import android.content.BroadcastReceiver;
+import android.os.Process;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.util.Log;
+
+/**
+ * Background executors for notification work that must stay off the main and
+ * bridge threads, such as image loading and broadcast receiver jobs.
+ *
+ * Jobs are never run on the caller. Those passed to execute() are queued
+ * however many there are; image loads, which may block on the network, run
+ * on their own threads and are dropped once QUEUE_CAPACITY of them wait.
+ */
+public class NotificationWorker {
+    private static final int POOL_SIZE = 2;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    private static final ThreadPoolExecutor executor = createExecutor("ReactSystemNotification", new LinkedBlockingQueue<Runnable>());
+    private static final ThreadPoolExecutor imageExecutor = createExecutor("ReactSystemNotification Image", new LinkedBlockingQueue<Runnable>(QUEUE_CAPACITY));
+
+    private static ThreadPoolExecutor createExecutor(final String name, LinkedBlockingQueue<Runnable> queue) {
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(
+            POOL_SIZE,
+            POOL_SIZE,
+            KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            queue,
+            new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger(1);
+
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, name + " #" + count.getAndIncrement());
+                }
+            },
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+
+        return threadPoolExecutor;
+    }
+
+    /**
+     * Run a job in the background.
+     */
+    public static void execute(Runnable runnable) {
+        executor.execute(runnable);
+    }
+
+    /**
+     * Run an image load in the background, unless too many are waiting
+     * already. Returns false if it's dropped.
+     */
+    public static boolean executeImageLoad(Runnable runnable) {
+        try {
+            imageExecutor.execute(runnable);
+            return true;
+        } catch (RejectedExecutionException e) {
+            Log.w("ReactSystemNotification", "NotificationWorker: Too many image loads queued, dropping one");
+            NotificationMetrics.increment(NotificationMetrics.IMAGE_LOADS_DROPPED, 1);
+            return false;
+        }
+    }
+
+    /**
+     * Run the job of a broadcast receiver in the background, keeping the
+     * broadcast alive until the job finishes.
+     */
+    public static void goAsync(BroadcastReceiver receiver, final Runnable runnable) {
+        final BroadcastReceiver.PendingResult pendingResult = receiver.goAsync();
+
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                } finally {
+                    pendingResult.finish();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,142 @@
+package io.neson.react.notification;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.SparseArray;
+
+import java.util.Map;
+
+import android.util.Log;
+
+/**
+ * Notification store backed by a single SharedPreferences file, one entry per
+ * notification id.
+ *
+ * This is the storage used by earlier versions. Android rewrites the whole
+ * file on every change, so it's kept for compatibility only.
+ */
+public class SharedPreferencesNotificationStore implements NotificationStore {
+    private final SharedPreferences sharedPreferences;
+
+    /**
+     * Constructor.
+     */
+    public SharedPreferencesNotificationStore(Context context) {
+        this.sharedPreferences = context.getSharedPreferences(NotificationManager.PREFERENCES_KEY, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Load all stored notifications, migrating entries saved in the legacy
+     * JSON format, as loadAllRecords().
+     */
+    @Override
+    public SparseArray<NotificationAttributes> loadAll() {
+        SparseArray<byte[]> records = loadAllRecords();
+        SparseArray<NotificationAttributes> attributes = new SparseArray<NotificationAttributes>(records.size());
+
+        for (int i = 0; i < records.size(); i++) {
+            try {
+                attributes.put(records.keyAt(i), NotificationAttributesCodec.decode(records.valueAt(i)));
+            } catch (Exception e) {
+                Log.e("ReactSystemNotification", "SharedPreferencesNotificationStore: loadAll Error: " + Log.getStackTraceString(e));
+            }
+        }
+
+        return attributes;
+    }
+
+    /**
+     * Load all stored notifications as binary records. Entries saved in the
+     * legacy JSON format are converted and saved back as binary records, so
+     * they are parsed once.
+     */
+    @Override
+    public SparseArray<byte[]> loadAllRecords() {
+        Map<String, ?> entries = sharedPreferences.getAll();
+        SparseArray<byte[]> records = new SparseArray<byte[]>(entries.size());
+        SharedPreferences.Editor migration = null;
+
+        for (Map.Entry<String, ?> entry : entries.entrySet()) {
+            try {
+                String value = (String) entry.getValue();
+                byte[] record = NotificationAttributesCodec.toRecord(value);
+
+                if (NotificationAttributesCodec.isLegacyJSON(value)) {
+                    if (migration == null) migration = sharedPreferences.edit();
+                    migration.putString(entry.getKey(), NotificationAttributesCodec.recordToString(record));
+                }
+
+                records.put(Integer.parseInt(entry.getKey()), record);
+            } catch (Exception e) {
+                Log.e("ReactSystemNotification", "SharedPreferencesNotificationStore: loadAllRecords Error: " + Log.getStackTraceString(e));
+            }
+        }
+
+        if (migration != null) {
+            apply(migration);
+            Log.i("ReactSystemNotification", "SharedPreferencesNotificationStore: Migrated notifications to binary records");
+        }
+
+        return records;
+    }
+
+    @Override
+    public Transaction edit() {
+        return new PreferencesTransaction(sharedPreferences.edit());
+    }
+
+    /**
+     * Whether there is nothing stored.
+     */
+    public boolean isEmpty() {
+        return sharedPreferences.getAll().isEmpty();
+    }
+
+    /**
+     * Delete everything stored.
+     */
+    public void clear() {
+        apply(sharedPreferences.edit().clear());
+    }
+
+    private static void apply(SharedPreferences.Editor editor) {
+        if (Build.VERSION.SDK_INT < 9) {
+            editor.commit();
+        } else {
+            editor.apply();
+        }
+    }
+
+    private static class PreferencesTransaction implements Transaction {
+        private final SharedPreferences.Editor editor;
+        private boolean changed = false;
+
+        PreferencesTransaction(SharedPreferences.Editor editor) {
+            this.editor = editor;
+        }
+
+        @Override
+        public Transaction put(int id, NotificationAttributes attributes) {
+            editor.putString(Integer.toString(id), NotificationAttributesCodec.encodeToString(attributes));
+            changed = true;
+            return this;
+        }
+
+        @Override
+        public Transaction remove(int id) {
+            editor.remove(Integer.toString(id));
+            changed = true;
+            return this;
+        }
+
+        @Override
+        public void commit() {
+            if (!changed) return;
+
+            long startTime = NotificationMetrics.start();
+            apply(editor);
+            NotificationMetrics.record(NotificationMetrics.PERSIST, startTime);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package io.neson.react.notification;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+import android.util.Log;
+
+/**
+ * Reschedule notifications repeating at a local time of day when the time
+ * zone or the system clock changes.
+ */
+public class SystemTimeChangeReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(final Context context, Intent intent) {
+        Log.i("ReactSystemNotification", "SystemTimeChangeReceiver: " + intent.getAction());
+
+        if (Intent.ACTION_TIMEZONE_CHANGED.equals(intent.getAction()) ||
+            Intent.ACTION_TIME_CHANGED.equals(intent.getAction())) {
+            NotificationWorker.goAsync(this, new Runnable() {
+                @Override
+                public void run() {
+                    NotificationScheduler.getInstance(context).onTimeChanged();
+                }
+            });
+        }
+    }
+}
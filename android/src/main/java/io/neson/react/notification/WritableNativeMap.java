@@ -1,6 +1,8 @@
 package io.neson.react.notification;
 
 import java.util.HashMap;
+import java.util.Iterator;
+
 import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.ReadableMap;
@@ -8,88 +10,145 @@ import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.ReadableType;
 import com.facebook.react.bridge.ReadableMapKeySetIterator;
 
-public class WritableNativeMap extends HashMap implements WritableMap {
+/**
+ * A WritableMap backed by a HashMap, usable without the React Native
+ * native libraries (e.g. in background services).
+ *
+ * Numbers are stored as given and read back with the requested type. Null
+ * values are kept, so hasKey() is true and isNull() tells them apart.
+ */
+public class WritableNativeMap extends HashMap<String, Object> implements WritableMap {
 
     @Override
     public boolean hasKey(String name) {
-        return (this.get(name) != null);
+        return containsKey(name);
     }
 
     @Override
     public boolean isNull(String name) {
-        return (this.get(name) == null);
+        return get(name) == null;
     }
 
     @Override
     public boolean getBoolean(String name) {
-        return (boolean) this.get(name);
+        return (Boolean) get(name);
     }
 
     @Override
     public double getDouble(String name) {
-        return (double) this.get(name);
+        return ((Number) get(name)).doubleValue();
     }
 
     @Override
     public int getInt(String name) {
-        Number v = (Number) this.get(name);
-        return (int) v.intValue();
+        return ((Number) get(name)).intValue();
     }
 
     @Override
     public String getString(String name) {
-        return (String) this.get(name);
+        return (String) get(name);
     }
 
     @Override
     public ReadableArray getArray(String name) {
-        return (ReadableArray) this.get(name);
+        return (ReadableArray) get(name);
     }
 
     @Override
     public ReadableMap getMap(String name) {
-        return (ReadableMap) this.get(name);
+        return (ReadableMap) get(name);
     }
 
     @Override
-    public ReadableType getType(String name) { return null; }
+    public ReadableType getType(String name) {
+        Object value = get(name);
+
+        if (value == null) return ReadableType.Null;
+        if (value instanceof Boolean) return ReadableType.Boolean;
+        if (value instanceof Number) return ReadableType.Number;
+        if (value instanceof String) return ReadableType.String;
+        if (value instanceof ReadableMap) return ReadableType.Map;
+        if (value instanceof ReadableArray) return ReadableType.Array;
+
+        throw new IllegalArgumentException("Unsupported value of " + name + ": " + value.getClass());
+    }
 
     @Override
-    public ReadableMapKeySetIterator keySetIterator() { return null; }
+    public ReadableMapKeySetIterator keySetIterator() {
+        final Iterator<String> keys = keySet().iterator();
+
+        return new ReadableMapKeySetIterator() {
+            @Override
+            public boolean hasNextKey() {
+                return keys.hasNext();
+            }
+
+            @Override
+            public String nextKey() {
+                return keys.next();
+            }
+        };
+    }
 
     @Override
-    public void putNull(String key) {}
+    public void putNull(String key) {
+        put(key, null);
+    }
 
     @Override
     public void putBoolean(String key, boolean value) {
-        this.put(key, value);
+        put(key, value);
     }
 
     @Override
     public void putDouble(String key, double value) {
-        this.put(key, value);
+        put(key, value);
     }
 
     @Override
     public void putInt(String key, int value) {
-        this.put(key, value);
+        put(key, value);
     }
 
     @Override
     public void putString(String key, String value) {
-        this.put(key, value);
+        put(key, value);
     }
 
     @Override
     public void putArray(String key, WritableArray value) {
-        this.put(key, value);
+        put(key, value);
     }
 
     @Override
     public void putMap(String key, WritableMap value) {
-        this.put(key, value);
+        put(key, value);
     }
 
-    @Override
-    public void merge(ReadableMap source) {}
+    /**
+     * Copy all entries of another map. Nested maps and arrays are shared,
+     * not copied.
+     */
+    @Override
+    public void merge(ReadableMap source) {
+        if (source instanceof WritableNativeMap) {
+            putAll((WritableNativeMap) source);
+            return;
+        }
+
+        ReadableMapKeySetIterator iterator = source.keySetIterator();
+
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+
+            switch (source.getType(key)) {
+                case Null: putNull(key); break;
+                case Boolean: putBoolean(key, source.getBoolean(key)); break;
+                case Number: putDouble(key, source.getDouble(key)); break;
+                case String: putString(key, source.getString(key)); break;
+                case Map: put(key, source.getMap(key)); break;
+                case Array: put(key, source.getArray(key)); break;
+            }
+        }
+    }
 }
@@ -0,0 +1,146 @@
+package io.neson.react.notification;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Minimal microbenchmark harness for the unit tests.
+ *
+ * Warms an operation up, then times a few batches of it and reports the
+ * median time and the bytes allocated per operation. Each result is printed
+ * as a JSON line prefixed by "BENCHMARK ", and appended to the file named by
+ * the benchmark.output system property, if set, so runs can be compared by
+ * tools.
+ */
+class Benchmark {
+    private static final long WARMUP_NANOS = 300 * 1000 * 1000L;
+    private static final long BATCH_NANOS = 50 * 1000 * 1000L;
+    private static final int BATCHES = 5;
+
+    // Keeps the results of the operations alive, so they're not optimized out
+    static volatile int sink;
+
+    /**
+     * An operation to measure, returning its result.
+     */
+    interface Operation {
+        Object run() throws Exception;
+    }
+
+    static class Result {
+        final String name;
+        final double nsPerOp;
+        final double bytesPerOp;
+        final long operations;
+        final Map<String, ? extends Number> metrics;
+
+        Result(String name, double nsPerOp, double bytesPerOp, long operations, Map<String, ? extends Number> metrics) {
+            this.name = name;
+            this.nsPerOp = nsPerOp;
+            this.bytesPerOp = bytesPerOp;
+            this.operations = operations;
+            this.metrics = metrics;
+        }
+
+        String toJson() {
+            StringBuilder json = new StringBuilder(String.format(Locale.US, "{\"name\":\"%s\",\"nsPerOp\":%.1f,\"bytesPerOp\":%.1f,\"operations\":%d",
+                name, nsPerOp, bytesPerOp, operations));
+
+            for (Map.Entry<String, ? extends Number> metric : metrics.entrySet()) {
+                json.append(",\"").append(metric.getKey()).append("\":").append(metric.getValue());
+            }
+
+            return json.append('}').toString();
+        }
+    }
+
+    /**
+     * Measure an operation and report the result.
+     */
+    static Result run(String name, Operation operation) throws Exception {
+        return run(name, Collections.<String, Number>emptyMap(), operation);
+    }
+
+    /**
+     * Measure an operation and report the result along with other metrics
+     * of it, e.g. the calls it makes.
+     */
+    static Result run(String name, Map<String, ? extends Number> metrics, Operation operation) throws Exception {
+        // Warm up, growing the batch until it takes long enough to time
+        int batchSize = 1;
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (true) {
+            long elapsed = runBatch(operation, batchSize);
+            if (elapsed < BATCH_NANOS) batchSize *= 2;
+            else if (System.nanoTime() > warmupEnd) break;
+        }
+
+        double[] nsPerOp = new double[BATCHES];
+        long allocatedBefore = getAllocatedBytes();
+
+        for (int i = 0; i < BATCHES; i++) {
+            nsPerOp[i] = (double) runBatch(operation, batchSize) / batchSize;
+        }
+
+        long allocatedAfter = getAllocatedBytes();
+        long operations = (long) batchSize * BATCHES;
+        Arrays.sort(nsPerOp);
+
+        Result result = new Result(name, nsPerOp[BATCHES / 2],
+            allocatedBefore < 0 ? -1 : (double) (allocatedAfter - allocatedBefore) / operations, operations, metrics);
+        report(result);
+
+        return result;
+    }
+
+    private static long runBatch(Operation operation, int batchSize) throws Exception {
+        int hash = 0;
+        long start = System.nanoTime();
+
+        for (int i = 0; i < batchSize; i++) {
+            Object value = operation.run();
+            if (value != null) hash ^= System.identityHashCode(value);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        sink ^= hash;
+
+        return elapsed;
+    }
+
+    /**
+     * Bytes allocated by the current thread so far, -1 if the JVM can't
+     * tell.
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1;
+
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void report(Result result) {
+        String line = result.toJson();
+        System.out.println("BENCHMARK " + line);
+
+        String output = System.getProperty("benchmark.output");
+        if (output == null || output.isEmpty()) return;
+
+        try {
+            FileWriter writer = new FileWriter(output, true);
+            try {
+                writer.write(line + "\n");
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Benchmark: Cannot write " + output + ": " + e.getMessage());
+        }
+    }
+}
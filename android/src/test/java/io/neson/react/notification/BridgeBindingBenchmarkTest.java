@@ -0,0 +1,374 @@
+package io.neson.react.notification;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.ReadableType;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Bridge calls and latency of binding the attributes rCreate gets from JS.
+ *
+ * Every call made on a ReadableNativeMap crosses JNI, CountingMap counts
+ * them on a WritableNativeMap. "singlePass" replays the binder that walked
+ * the keys instead of probing the known fields: three calls per key sent
+ * against one per known field plus one per key sent, so it only makes fewer
+ * calls on sparse maps, not on the full ones JS sends. Only the call counts
+ * compare: the replay binds through loadFromMap, and neither latency has
+ * the JNI cost, which takes a device to measure.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class BridgeBindingBenchmarkTest {
+    private static final List<String> STRING_FIELDS = Arrays.asList(
+        "subject", "message", "action", "payload", "repeatEvery", "repeatType", "smallIcon", "largeIcon", "sound",
+        "vibrate", "lights", "tickerText", "bigText", "bigStyleImageBase64", "subText", "color", "category", "groupBy"
+    );
+    private static final List<String> INT_FIELDS = Arrays.asList(
+        "id", "delay", "sendAtYear", "sendAtMonth", "sendAtDay", "sendAtWeekDay", "sendAtHour", "sendAtMinute",
+        "repeatTime", "repeatCount", "priority", "progress", "number", "groupWindow"
+    );
+    private static final List<String> BOOLEAN_FIELDS = Arrays.asList("delayed", "scheduled", "autoClear", "onlyAlertOnce", "localOnly");
+    private static final List<String> TIME_FIELDS = Arrays.asList("sendAt", "endAt", "when");
+    private static final int KNOWN_FIELDS = STRING_FIELDS.size() + INT_FIELDS.size() + BOOLEAN_FIELDS.size() + TIME_FIELDS.size() + 1;
+
+    @Test
+    public void probesTheKnownFields() {
+        CountingMap map = createMap(false);
+
+        new NotificationAttributes().loadFromReadableMap(map);
+
+        // A hasKey() per known field, a getter per key sent, plus getType()
+        // for the timestamps
+        int calls = KNOWN_FIELDS + map.size() + TIME_FIELDS.size();
+        // The same for the 3 keys of the inbox style, and its 2 lines
+        calls += 3 + 3 + 1 + 2;
+        assertEquals(calls, map.getCalls());
+    }
+
+    @Test
+    public void takesFewerCallsThanASinglePass() {
+        CountingMap map = createMap(false);
+        new NotificationAttributes().loadFromReadableMap(map);
+
+        CountingMap walkedMap = createMap(false);
+        walk(new NotificationAttributes(), walkedMap);
+
+        assertTrue(map.getCalls() + " calls, " + walkedMap.getCalls() + " in a single pass", map.getCalls() < walkedMap.getCalls());
+    }
+
+    @Test
+    public void bindsTheSameAttributesAsASinglePass() {
+        NotificationAttributes bound = new NotificationAttributes();
+        bound.loadFromReadableMap(createMap(false));
+
+        NotificationAttributes walked = new NotificationAttributes();
+        walk(walked, createMap(false));
+
+        assertEquals(NotificationAttributesCodecTest.toJson(walked), NotificationAttributesCodecTest.toJson(bound));
+        assertEquals(Long.valueOf(1460000000000L), bound.sendAt);
+        assertEquals(Arrays.asList("Alice: lunch?", "Bob: sure"), bound.inboxStyleLines);
+    }
+
+    @Test
+    public void bindsStringTimestamps() {
+        NotificationAttributes bound = new NotificationAttributes();
+        bound.loadFromReadableMap(createMap(false));
+
+        NotificationAttributes legacy = new NotificationAttributes();
+        legacy.loadFromReadableMap(createMap(true));
+
+        assertEquals(NotificationAttributesCodecTest.toJson(bound), NotificationAttributesCodecTest.toJson(legacy));
+    }
+
+    @Test
+    public void probing() throws Exception {
+        final CountingMap map = createMap(false);
+        new NotificationAttributes().loadFromReadableMap(map);
+
+        Benchmark.run("bind.probing", callsOf(map), new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                NotificationAttributes attributes = new NotificationAttributes();
+                attributes.loadFromReadableMap(map);
+                return attributes;
+            }
+        });
+    }
+
+    @Test
+    public void singlePass() throws Exception {
+        final CountingMap map = createMap(false);
+        walk(new NotificationAttributes(), map);
+
+        Benchmark.run("bind.singlePass", callsOf(map), new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                NotificationAttributes attributes = new NotificationAttributes();
+                walk(attributes, map);
+                return attributes;
+            }
+        });
+    }
+
+    /**
+     * What encodeNativeNotification sends for a weekly reminder with an
+     * inbox style, the timestamps as strings if legacy.
+     */
+    private static CountingMap createMap(boolean legacy) {
+        int[] calls = new int[1];
+
+        CountingMap inboxStyle = new CountingMap(calls);
+        inboxStyle.putString("bigContentTitle", "2 new messages");
+        inboxStyle.putString("summaryText", "Lunch");
+        inboxStyle.put("lines", new CountingArray(calls, "Alice: lunch?", "Bob: sure"));
+
+        CountingMap map = new CountingMap(calls);
+        map.putInt("id", 4242);
+        map.putString("subject", "Reminder");
+        map.putString("message", "Lunch with the team");
+        map.putString("action", "DEFAULT");
+        map.putString("payload", "{\"type\":\"reminder\",\"cid\":\"c1\"}");
+        map.putString("smallIcon", "ic_launcher");
+        map.putBoolean("autoClear", true);
+        map.putString("tickerText", "Reminder: Lunch with the team");
+        map.putInt("priority", 1);
+        map.putString("sound", "default");
+        map.putString("vibrate", "default");
+        map.putString("lights", "default");
+        map.putBoolean("delayed", false);
+        map.putBoolean("scheduled", true);
+        putTime(map, "sendAt", 1460000000000L, legacy);
+        map.putInt("sendAtYear", 2016);
+        map.putInt("sendAtMonth", 4);
+        map.putInt("sendAtDay", 7);
+        map.putInt("sendAtWeekDay", 4);
+        map.putInt("sendAtHour", 5);
+        map.putInt("sendAtMinute", 33);
+        map.putString("repeatEvery", "week");
+        map.putString("repeatType", "week");
+        map.putInt("repeatCount", 10);
+        putTime(map, "endAt", 1466307200000L, legacy);
+        putTime(map, "when", 1460000000000L, legacy);
+        map.putMap("inboxStyle", inboxStyle);
+        return map;
+    }
+
+    private static void putTime(CountingMap map, String key, long time, boolean legacy) {
+        if (legacy) map.putString(key, String.valueOf(time));
+        else map.putDouble(key, time);
+    }
+
+    /**
+     * The replaced binder: walk the keys, read each with the getter of its
+     * field.
+     */
+    private static void walk(NotificationAttributes attributes, ReadableMap readableMap) {
+        HashMap<String, Object> values = new HashMap<String, Object>();
+        ReadableMapKeySetIterator iterator = readableMap.keySetIterator();
+
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+
+            if (STRING_FIELDS.contains(key)) values.put(key, readableMap.getString(key));
+            else if (INT_FIELDS.contains(key)) values.put(key, readableMap.getInt(key));
+            else if (BOOLEAN_FIELDS.contains(key)) values.put(key, readableMap.getBoolean(key));
+            else if (TIME_FIELDS.contains(key)) values.put(key, readableMap.getType(key) == ReadableType.String
+                ? Long.parseLong(readableMap.getString(key)) : (long) readableMap.getDouble(key));
+            else if (key.equals("inboxStyle")) values.put(key, walkInboxStyle(readableMap.getMap(key)));
+        }
+
+        attributes.loadFromMap(values);
+    }
+
+    private static Map<String, Object> walkInboxStyle(ReadableMap readableMap) {
+        HashMap<String, Object> values = new HashMap<String, Object>();
+        ReadableMapKeySetIterator iterator = readableMap.keySetIterator();
+
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+
+            if (key.equals("lines")) {
+                ReadableArray lines = readableMap.getArray(key);
+                String[] strings = new String[lines.size()];
+                for (int i = 0; i < strings.length; i++) strings[i] = lines.getString(i);
+                values.put(key, Arrays.asList(strings));
+            } else {
+                values.put(key, readableMap.getString(key));
+            }
+        }
+
+        return values;
+    }
+
+    private static Map<String, Integer> callsOf(CountingMap map) {
+        Map<String, Integer> metrics = new LinkedHashMap<String, Integer>();
+        metrics.put("bridgeCalls", map.getCalls());
+        return metrics;
+    }
+
+    /**
+     * WritableNativeMap counting the calls made on it, its iterators and
+     * the maps and arrays sharing its counter.
+     */
+    private static class CountingMap extends WritableNativeMap {
+        private final int[] calls;
+
+        CountingMap(int[] calls) {
+            this.calls = calls;
+        }
+
+        int getCalls() {
+            return calls[0];
+        }
+
+        @Override
+        public boolean hasKey(String name) {
+            calls[0]++;
+            return super.hasKey(name);
+        }
+
+        @Override
+        public boolean isNull(String name) {
+            calls[0]++;
+            return super.isNull(name);
+        }
+
+        @Override
+        public boolean getBoolean(String name) {
+            calls[0]++;
+            return super.getBoolean(name);
+        }
+
+        @Override
+        public double getDouble(String name) {
+            calls[0]++;
+            return super.getDouble(name);
+        }
+
+        @Override
+        public int getInt(String name) {
+            calls[0]++;
+            return super.getInt(name);
+        }
+
+        @Override
+        public String getString(String name) {
+            calls[0]++;
+            return super.getString(name);
+        }
+
+        @Override
+        public ReadableArray getArray(String name) {
+            calls[0]++;
+            return super.getArray(name);
+        }
+
+        @Override
+        public ReadableMap getMap(String name) {
+            calls[0]++;
+            return super.getMap(name);
+        }
+
+        @Override
+        public ReadableType getType(String name) {
+            calls[0]++;
+            return super.getType(name);
+        }
+
+        @Override
+        public ReadableMapKeySetIterator keySetIterator() {
+            calls[0]++;
+            final ReadableMapKeySetIterator iterator = super.keySetIterator();
+
+            return new ReadableMapKeySetIterator() {
+                @Override
+                public boolean hasNextKey() {
+                    calls[0]++;
+                    return iterator.hasNextKey();
+                }
+
+                @Override
+                public String nextKey() {
+                    calls[0]++;
+                    return iterator.nextKey();
+                }
+            };
+        }
+    }
+
+    /**
+     * ReadableArray of strings counting the calls made on it.
+     */
+    private static class CountingArray implements ReadableArray {
+        private final int[] calls;
+        private final String[] values;
+
+        CountingArray(int[] calls, String... values) {
+            this.calls = calls;
+            this.values = values;
+        }
+
+        @Override
+        public int size() {
+            calls[0]++;
+            return values.length;
+        }
+
+        @Override
+        public boolean isNull(int index) {
+            calls[0]++;
+            return values[index] == null;
+        }
+
+        @Override
+        public String getString(int index) {
+            calls[0]++;
+            return values[index];
+        }
+
+        @Override
+        public ReadableType getType(int index) {
+            calls[0]++;
+            return values[index] == null ? ReadableType.Null : ReadableType.String;
+        }
+
+        @Override
+        public boolean getBoolean(int index) {
+            throw new ClassCastException("Not a boolean: " + index);
+        }
+
+        @Override
+        public double getDouble(int index) {
+            throw new ClassCastException("Not a number: " + index);
+        }
+
+        @Override
+        public int getInt(int index) {
+            throw new ClassCastException("Not a number: " + index);
+        }
+
+        @Override
+        public ReadableArray getArray(int index) {
+            throw new ClassCastException("Not an array: " + index);
+        }
+
+        @Override
+        public ReadableMap getMap(int index) {
+            throw new ClassCastException("Not a map: " + index);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package io.neson.react.notification;
+
+import android.util.SparseArray;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Latency of loading and querying the saved notifications as
+ * NotificationAttributesCache does, at 10, 1k and 10k of them: loading
+ * decodes every header and indexes it, queries run on the index only, but
+ * for the action ones reading the actions from the records the first time.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class IndexBenchmarkTest {
+    private static final int[] SIZES = { 10, 1000, 10000 };
+    private static final long FIRST_FIRE_AT = 1460000000000L;
+    private static final String[] ACTIONS = { "OPEN_CHAT", "OPEN_EVENT", "DISMISS", "SNOOZE", "REPLY" };
+    private static final String[] REPEAT_TYPES = { null, "day", "week", "minute" };
+
+    @Test
+    public void load() throws Exception {
+        for (int size : SIZES) {
+            final SparseArray<byte[]> records = createRecords(size);
+
+            Benchmark.run("index.load." + size, new Benchmark.Operation() {
+                @Override
+                public Object run() {
+                    return load(records);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void queryAll() throws Exception {
+        for (int size : SIZES) {
+            final NotificationIndex index = load(createRecords(size));
+            final NotificationQuery query = new NotificationQuery();
+            assertEquals(size, index.query(query).size());
+
+            Benchmark.run("index.queryAll." + size, new Benchmark.Operation() {
+                @Override
+                public Object run() {
+                    return index.query(query);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void queryByFireTime() throws Exception {
+        for (int size : SIZES) {
+            final NotificationIndex index = load(createRecords(size));
+
+            // The next 10 minutes, about 10 of them
+            final NotificationQuery query = new NotificationQuery();
+            query.fireAfter = FIRST_FIRE_AT + size / 2 * 60000L;
+            query.fireBefore = query.fireAfter + 10 * 60000L;
+            assertEquals(Math.min(size / 2, 10), index.query(query).size());
+
+            Benchmark.run("index.queryByFireTime." + size, new Benchmark.Operation() {
+                @Override
+                public Object run() {
+                    return index.query(query);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void queryByAction() throws Exception {
+        for (int size : SIZES) {
+            final NotificationIndex index = load(createRecords(size));
+            final NotificationQuery query = new NotificationQuery();
+            query.action = ACTIONS[0];
+            assertEquals((size + ACTIONS.length - 1) / ACTIONS.length, index.query(query).size());
+
+            Benchmark.run("index.queryByAction." + size, new Benchmark.Operation() {
+                @Override
+                public Object run() {
+                    return index.query(query);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void firstQueryByAction() throws Exception {
+        for (int size : SIZES) {
+            final SparseArray<byte[]> records = createRecords(size);
+            final NotificationQuery query = new NotificationQuery();
+            query.action = ACTIONS[0];
+
+            Benchmark.run("index.firstQueryByAction." + size, new Benchmark.Operation() {
+                @Override
+                public Object run() {
+                    return load(records).query(query);
+                }
+            });
+        }
+    }
+
+    private static NotificationIndex load(final SparseArray<byte[]> records) {
+        NotificationIndex index = new NotificationIndex(new NotificationIndex.FieldReader() {
+            @Override
+            public String readAction(int id) {
+                return NotificationAttributesCodec.decodeQueryFields(records.get(id)).action;
+            }
+
+            @Override
+            public String readPayload(int id, String key) {
+                return null;
+            }
+        });
+
+        for (int i = 0; i < records.size(); i++) {
+            index.put(records.keyAt(i), NotificationAttributesCodec.decodeHeader(records.valueAt(i)));
+        }
+
+        return index;
+    }
+
+    private static SparseArray<byte[]> createRecords(int size) {
+        SparseArray<byte[]> records = new SparseArray<byte[]>(size);
+        NotificationAttributes attributes = NotificationAttributesCodecTest.createFullAttributes();
+
+        for (int id = 0; id < size; id++) {
+            attributes.id = id;
+            attributes.action = ACTIONS[id % ACTIONS.length];
+            attributes.repeatType = REPEAT_TYPES[id % REPEAT_TYPES.length];
+            attributes.nextFireAt = FIRST_FIRE_AT + id * 60000L;
+            records.put(id, NotificationAttributesCodec.encode(attributes));
+        }
+
+        return records;
+    }
+}
@@ -0,0 +1,196 @@
+package io.neson.react.notification;
+
+import android.util.SparseArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Recovery of the log: only a torn last record is dropped, corruption
+ * anywhere else fails the load and leaves the file as is.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class LogNotificationStoreTest {
+    // [magic][version] before the records
+    private static final int HEADER_SIZE = 4 + 1;
+    // [op][id][length][crc32] before the attributes of a record
+    private static final int RECORD_HEADER_SIZE = 1 + 4 + 4 + 4;
+
+    private File file;
+    // Where the second record starts
+    private long secondOffset;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("notifications", ".log");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void recordsAreReadBack() {
+        writeTwoRecords();
+
+        SparseArray<byte[]> records = new LogNotificationStore(file).loadAllRecords();
+
+        assertEquals(2, records.size());
+        assertSubject("First", records.get(1));
+        assertSubject("Second", records.get(2));
+    }
+
+    @Test
+    public void tornLastRecordIsDropped() throws IOException {
+        writeTwoRecords();
+        setLength(file.length() - 2);
+
+        SparseArray<byte[]> records = new LogNotificationStore(file).loadAllRecords();
+
+        assertEquals(1, records.size());
+        assertSubject("First", records.get(1));
+        assertEquals(secondOffset, file.length());
+    }
+
+    @Test
+    public void badChecksumOfTheLastRecordIsTorn() throws IOException {
+        writeTwoRecords();
+        flipByte(file.length() - 5);
+
+        SparseArray<byte[]> records = new LogNotificationStore(file).loadAllRecords();
+
+        assertEquals(1, records.size());
+        assertNull(records.get(2));
+        assertEquals(secondOffset, file.length());
+    }
+
+    @Test
+    public void badLengthInTheMiddleFails() throws IOException {
+        writeTwoRecords();
+        // The last byte of the first record's length, which made it run
+        // past the end of the file before it was checked
+        assertLoadFails(HEADER_SIZE + 1 + 4 + 3);
+    }
+
+    @Test
+    public void badChecksumInTheMiddleFails() throws IOException {
+        writeTwoRecords();
+        assertLoadFails(HEADER_SIZE + RECORD_HEADER_SIZE);
+    }
+
+    @Test
+    public void badHeaderOfTheLastRecordFails() throws IOException {
+        writeTwoRecords();
+        assertLoadFails(secondOffset + 1);
+    }
+
+    @Test
+    public void version1LogsAreUpgraded() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(0x524E534E);
+        data.writeByte(1);
+        writeVersion1Record(data, 1, NotificationAttributesCodec.encode(createAttributes(1, "First")));
+        writeVersion1Record(data, 2, NotificationAttributesCodec.encode(createAttributes(2, "Second")));
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(bytes.toByteArray());
+        out.close();
+
+        LogNotificationStore store = new LogNotificationStore(file);
+        store.edit().remove(1).commit();
+
+        SparseArray<byte[]> records = new LogNotificationStore(file).loadAllRecords();
+        assertEquals(1, records.size());
+        assertSubject("Second", records.get(2));
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        randomAccessFile.seek(4);
+        assertEquals(2, randomAccessFile.readUnsignedByte());
+        randomAccessFile.close();
+    }
+
+    private void writeTwoRecords() {
+        LogNotificationStore store = new LogNotificationStore(file);
+        store.edit().put(1, createAttributes(1, "First")).commit();
+        secondOffset = file.length();
+        store.edit().put(2, createAttributes(2, "Second")).commit();
+    }
+
+    private static void assertSubject(String subject, byte[] record) {
+        assertEquals(subject, NotificationAttributesCodec.decode(record).subject);
+    }
+
+    private void assertLoadFails(long position) throws IOException {
+        long length = file.length();
+        flipByte(position);
+
+        try {
+            new LogNotificationStore(file).loadAllRecords();
+            fail("Loaded a corrupt log");
+        } catch (RuntimeException e) {
+            // Expected
+        }
+
+        assertEquals(length, file.length());
+    }
+
+    private void flipByte(long position) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.seek(position);
+            int value = randomAccessFile.read();
+            randomAccessFile.seek(position);
+            randomAccessFile.write(value ^ 0xFF);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private void setLength(long length) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(length);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static NotificationAttributes createAttributes(int id, String subject) {
+        NotificationAttributes attributes = new NotificationAttributes();
+        attributes.id = id;
+        attributes.subject = subject;
+        return attributes;
+    }
+
+    private static void writeVersion1Record(DataOutputStream data, int id, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(1);
+        crc.update(id >>> 24); crc.update(id >>> 16); crc.update(id >>> 8); crc.update(id);
+        crc.update(payload);
+
+        data.writeByte(1);
+        data.writeInt(id);
+        data.writeInt(payload.length);
+        data.write(payload);
+        data.writeInt((int) crc.getValue());
+    }
+}
@@ -0,0 +1,274 @@
+package io.neson.react.notification;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.google.gson.Gson;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class NotificationAttributesCodecTest {
+
+    @Test
+    public void roundTripKeepsAllFields() {
+        NotificationAttributes attributes = createFullAttributes();
+
+        NotificationAttributes decoded = NotificationAttributesCodec.decode(NotificationAttributesCodec.encode(attributes));
+
+        assertEquals(toJson(attributes), toJson(decoded));
+    }
+
+    @Test
+    public void roundTripKeepsExtremeValues() {
+        NotificationAttributes attributes = new NotificationAttributes();
+        attributes.id = Integer.MIN_VALUE;
+        attributes.delay = Integer.MAX_VALUE;
+        attributes.sendAt = Long.MAX_VALUE;
+        attributes.endAt = -1L;
+        attributes.message = "Ünïcödé ✓ 😀";
+        attributes.subject = "";
+        attributes.inboxStyle = false;
+
+        NotificationAttributes decoded = NotificationAttributesCodec.decode(NotificationAttributesCodec.encode(attributes));
+
+        assertEquals(toJson(attributes), toJson(decoded));
+    }
+
+    @Test
+    public void nullFieldsAreNotWritten() {
+        NotificationAttributes attributes = new NotificationAttributes();
+        attributes.id = 1;
+
+        byte[] record = NotificationAttributesCodec.encode(attributes);
+        NotificationAttributes decoded = NotificationAttributesCodec.decode(record);
+
+        // Version, key and value
+        assertEquals(3, record.length);
+        assertEquals(Integer.valueOf(1), decoded.id);
+        assertNull(decoded.subject);
+        assertNull(decoded.sendAt);
+        assertFalse(decoded.inboxStyle);
+    }
+
+    @Test
+    public void unknownFieldsSurviveAReSave() {
+        byte[] known = NotificationAttributesCodec.encode(createFullAttributes());
+        byte[] unknown = {
+            // Tag 1000, varint 5
+            (byte) 0xC0, 0x3E, 0x0A,
+            // Tag 1001, bytes "hi"
+            (byte) 0xCA, 0x3E, 0x02, 'h', 'i'
+        };
+        byte[] record = concat(known, unknown);
+
+        NotificationAttributes decoded = NotificationAttributesCodec.decode(record);
+
+        assertArrayEquals(unknown, decoded.unknownFields);
+        assertArrayEquals(record, NotificationAttributesCodec.encode(decoded));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedRecords() {
+        byte[] record = NotificationAttributesCodec.encode(createFullAttributes());
+
+        NotificationAttributesCodec.decode(Arrays.copyOf(record, record.length - 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownVersions() {
+        NotificationAttributesCodec.decode(new byte[] { 0 });
+    }
+
+    @Test
+    public void rejectsLaterVersions() {
+        byte[] record = NotificationAttributesCodec.encode(createFullAttributes());
+        record[0] = (byte) (NotificationAttributesCodec.VERSION + 1);
+
+        assertRejected(record);
+    }
+
+    @Test
+    public void decodesLegacyJSON() {
+        String json = "{\"id\":7,\"subject\":\"Hey\",\"message\":\"Yo\",\"action\":\"DEFAULT\",\"payload\":\"{}\"," +
+            "\"delayed\":false,\"scheduled\":true,\"sendAt\":1460000000000,\"sendAtYear\":2016,\"sendAtMonth\":4," +
+            "\"sendAtDay\":7,\"sendAtWeekDay\":4,\"sendAtHour\":3,\"sendAtMinute\":33,\"repeatEvery\":\"day\"," +
+            "\"endAt\":1470000000000,\"smallIcon\":\"ic_launcher\",\"autoClear\":true," +
+            "\"inboxStyle\":true,\"inboxStyleLines\":[\"a\",\"b\"]}";
+
+        assertTrue(NotificationAttributesCodec.isLegacyJSON(json));
+
+        NotificationAttributes attributes = NotificationAttributesCodec.decodeFromString(json);
+
+        assertEquals(Integer.valueOf(7), attributes.id);
+        assertEquals("Hey", attributes.subject);
+        assertEquals(Long.valueOf(1460000000000L), attributes.sendAt);
+        assertEquals(Integer.valueOf(33), attributes.sendAtMinute);
+        assertEquals("day", attributes.repeatEvery);
+        assertEquals(Long.valueOf(1470000000000L), attributes.endAt);
+        assertTrue(attributes.scheduled);
+        assertTrue(attributes.inboxStyle);
+        assertEquals(Arrays.asList("a", "b"), attributes.inboxStyleLines);
+
+        // The same attributes as a binary record
+        assertEquals(toJson(attributes), toJson(NotificationAttributesCodec.decode(NotificationAttributesCodec.toRecord(json))));
+    }
+
+    @Test
+    public void legacyJSONWithoutInboxStyleDefaultsToFalse() {
+        NotificationAttributes attributes = NotificationAttributesCodec.decodeFromString("{\"id\":1}");
+
+        assertFalse(attributes.inboxStyle);
+    }
+
+    @Test
+    public void storedStringsRoundTrip() {
+        NotificationAttributes attributes = createFullAttributes();
+
+        String stored = NotificationAttributesCodec.encodeToString(attributes);
+
+        assertFalse(NotificationAttributesCodec.isLegacyJSON(stored));
+        assertEquals(toJson(attributes), toJson(NotificationAttributesCodec.decodeFromString(stored)));
+        assertArrayEquals(NotificationAttributesCodec.encode(attributes), NotificationAttributesCodec.toRecord(stored));
+    }
+
+    @Test
+    public void headerHasTheScheduleOnly() {
+        NotificationAttributes attributes = createFullAttributes();
+
+        NotificationAttributes header = NotificationAttributesCodec.decodeHeader(NotificationAttributesCodec.encode(attributes));
+
+        assertEquals(attributes.id, header.id);
+        assertEquals(attributes.delayed, header.delayed);
+        assertEquals(attributes.scheduled, header.scheduled);
+        assertEquals(attributes.sendAt, header.sendAt);
+        assertEquals(attributes.sendAtWeekDay, header.sendAtWeekDay);
+        assertEquals(attributes.repeatType, header.repeatType);
+        assertEquals(attributes.repeatEvery, header.repeatEvery);
+        assertEquals(attributes.endAt, header.endAt);
+        assertEquals(attributes.nextFireAt, header.nextFireAt);
+        assertEquals(attributes.bigStyleImageRef, header.bigStyleImageRef);
+
+        assertNull(header.subject);
+        assertNull(header.message);
+        assertNull(header.action);
+        assertNull(header.payload);
+        assertNull(header.bigStyleImageBase64);
+        assertNull(header.inboxStyleLines);
+        assertNotNull(header.inboxStyle);
+    }
+
+    @Test
+    public void queryFieldsAreTheActionAndPayloadOnly() {
+        NotificationAttributes attributes = createFullAttributes();
+
+        NotificationAttributes fields = NotificationAttributesCodec.decodeQueryFields(NotificationAttributesCodec.encode(attributes));
+
+        assertEquals(attributes.id, fields.id);
+        assertEquals(attributes.action, fields.action);
+        assertEquals(attributes.payload, fields.payload);
+
+        assertNull(fields.subject);
+        assertNull(fields.sendAt);
+        assertNull(fields.nextFireAt);
+    }
+
+    static NotificationAttributes createFullAttributes() {
+        NotificationAttributes a = new NotificationAttributes();
+        a.id = 42;
+        a.subject = "Subject";
+        a.message = "Message";
+        a.action = "OPEN_CHAT";
+        a.payload = "{\"type\":\"message\",\"cid\":\"c1\"}";
+        a.delayed = false;
+        a.delay = 1000;
+        a.scheduled = true;
+        a.sendAt = 1460000000000L;
+        a.sendAtYear = 2016;
+        a.sendAtMonth = 4;
+        a.sendAtDay = 7;
+        a.sendAtWeekDay = 4;
+        a.sendAtHour = 3;
+        a.sendAtMinute = 33;
+        a.repeatEvery = "week";
+        a.repeatType = "week";
+        a.repeatTime = 60000;
+        a.repeatCount = 3;
+        a.endAt = 1470000000000L;
+        a.priority = 2;
+        a.smallIcon = "ic_launcher";
+        a.largeIcon = "ic_large";
+        a.sound = "default";
+        a.vibrate = "default";
+        a.lights = "default";
+        a.autoClear = true;
+        a.onlyAlertOnce = false;
+        a.tickerText = "Ticker";
+        a.when = 1460000001000L;
+        a.bigText = "Big text";
+        a.bigStyleImageBase64 = "aGVsbG8=";
+        a.subText = "Sub text";
+        a.progress = 500;
+        a.color = "#ff0000";
+        a.number = 9;
+        a.category = "msg";
+        a.localOnly = true;
+        a.inboxStyle = true;
+        a.inboxStyleBigContentTitle = "Title";
+        a.inboxStyleSummaryText = "Summary";
+        a.inboxStyleLines = new ArrayList<String>(Arrays.asList("one", "two"));
+        a.groupBy = "cid";
+        a.groupWindow = 3000;
+        a.nextFireAt = 1460604800000L;
+        a.bigStyleImageRef = "0123456789abcdef0123456789abcdef01234567";
+        return a;
+    }
+
+    static String toJson(NotificationAttributes attributes) {
+        return new Gson().toJson(attributes);
+    }
+
+    /**
+     * Assert that none of the decoders reads the record.
+     */
+    private static void assertRejected(byte[] record) {
+        try {
+            NotificationAttributesCodec.decode(record);
+            fail("Decoded the record");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        try {
+            NotificationAttributesCodec.decodeHeader(record);
+            fail("Decoded the header of the record");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        try {
+            NotificationAttributesCodec.decodeQueryFields(record);
+            fail("Decoded the query fields of the record");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+}
@@ -0,0 +1,131 @@
+package io.neson.react.notification;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Parity of NotificationAttributesEncoder with encodeNativeNotification of
+ * index.android.js, over the corpus of encoder-fixtures.json. The expected
+ * outputs come from the JS encoder, see generate-encoder-fixtures.js.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class NotificationAttributesEncoderTest {
+    private TimeZone defaultTimeZone;
+    private JsonObject corpus;
+
+    @Before
+    public void setUp() throws Exception {
+        Reader reader = new InputStreamReader(getClass().getClassLoader().getResourceAsStream("encoder-fixtures.json"), "UTF-8");
+        try {
+            corpus = new JsonParser().parse(reader).getAsJsonObject();
+        } finally {
+            reader.close();
+        }
+
+        // The expected dates were computed in this time zone
+        defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone(corpus.get("timeZone").getAsString()));
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultTimeZone);
+    }
+
+    @Test
+    public void matchesTheJSEncoder() {
+        ArrayList<String> mismatches = new ArrayList<String>();
+
+        for (JsonElement element : corpus.getAsJsonArray("fixtures")) {
+            JsonObject fixture = element.getAsJsonObject();
+            Map<String, Object> encoded = NotificationAttributesEncoder.encode(fixture.get("input").toString());
+
+            String mismatch = compare(fixture.getAsJsonObject("expected"), encoded);
+            if (mismatch != null) mismatches.add(fixture.get("name").getAsString() + ": " + mismatch);
+        }
+
+        assertTrue(mismatches.toString(), mismatches.isEmpty());
+    }
+
+    @Test
+    public void loadsWhatTheJSEncoderBuilds() {
+        JsonObject expected = getFixture("sendAtNumberDailyCount").getAsJsonObject("expected");
+
+        NotificationAttributes attributes = new NotificationAttributes();
+        attributes.loadFromMap(NotificationAttributesEncoder.encode(getFixture("sendAtNumberDailyCount").get("input").toString()));
+
+        assertEquals(Long.valueOf(expected.get("sendAt").getAsLong()), attributes.sendAt);
+        assertEquals(Long.valueOf(expected.get("endAt").getAsLong()), attributes.endAt);
+        assertEquals(expected.get("repeatType").getAsString(), attributes.repeatType);
+        assertEquals(Integer.valueOf(expected.get("sendAtHour").getAsInt()), attributes.sendAtHour);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidSendAt() {
+        NotificationAttributesEncoder.encode("{\"id\":1,\"sendAt\":\"tomorrow\"}");
+    }
+
+    private JsonObject getFixture(String name) {
+        for (JsonElement element : corpus.getAsJsonArray("fixtures")) {
+            if (name.equals(element.getAsJsonObject().get("name").getAsString())) return element.getAsJsonObject();
+        }
+        throw new IllegalArgumentException("No fixture " + name);
+    }
+
+    /**
+     * Describe how the encoded map differs from the JS output, null if it
+     * doesn't. Null values are left out by both sides of the bridge.
+     */
+    private static String compare(JsonObject expected, Map<String, Object> encoded) {
+        Set<String> keys = new HashSet<String>();
+
+        for (Map.Entry<String, JsonElement> entry : expected.entrySet()) {
+            if (entry.getValue().isJsonNull()) continue;
+            keys.add(entry.getKey());
+
+            Object value = encoded.get(entry.getKey());
+            if (!matches(entry.getValue(), value)) {
+                return entry.getKey() + " is " + value + ", expected " + entry.getValue();
+            }
+        }
+
+        for (Map.Entry<String, Object> entry : encoded.entrySet()) {
+            if (!keys.contains(entry.getKey())) return "unexpected " + entry.getKey() + " " + entry.getValue();
+        }
+
+        return null;
+    }
+
+    private static boolean matches(JsonElement expected, Object value) {
+        if (value == null) return false;
+        if (!expected.isJsonPrimitive()) return expected.equals(value);
+
+        JsonPrimitive primitive = expected.getAsJsonPrimitive();
+
+        if (primitive.isNumber()) return value instanceof Number && ((Number) value).doubleValue() == primitive.getAsDouble();
+        if (primitive.isBoolean()) return value instanceof Boolean && value.equals(primitive.getAsBoolean());
+
+        return primitive.getAsString().equals(value);
+    }
+}
@@ -0,0 +1,54 @@
+package io.neson.react.notification;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class NotificationAttributesTest {
+
+    @Test
+    public void copyKeepsAllFields() {
+        NotificationAttributes attributes = NotificationAttributesCodecTest.createFullAttributes();
+        attributes.group = "cid:c1";
+        attributes.unknownFields = new byte[] { 1, 2, 3 };
+
+        NotificationAttributes copy = attributes.copy();
+
+        assertEquals(NotificationAttributesCodecTest.toJson(attributes), NotificationAttributesCodecTest.toJson(copy));
+        assertEquals(attributes.group, copy.group);
+        assertArrayEquals(attributes.unknownFields, copy.unknownFields);
+    }
+
+    @Test
+    public void copyDoesNotShareMutableFields() {
+        NotificationAttributes attributes = NotificationAttributesCodecTest.createFullAttributes();
+        attributes.unknownFields = new byte[] { 1, 2, 3 };
+
+        NotificationAttributes copy = attributes.copy();
+        attributes.subject = "Changed";
+        attributes.inboxStyleLines.add("three");
+        attributes.unknownFields[0] = 9;
+
+        assertEquals("Subject", copy.subject);
+        assertEquals(2, copy.inboxStyleLines.size());
+        assertNotSame(attributes.inboxStyleLines, copy.inboxStyleLines);
+        assertEquals(1, copy.unknownFields[0]);
+    }
+
+    @Test
+    public void copyOfEmptyAttributesIsEmpty() {
+        NotificationAttributes copy = new NotificationAttributes().copy();
+
+        assertNull(copy.id);
+        assertNull(copy.inboxStyleLines);
+        assertNull(copy.unknownFields);
+    }
+}
@@ -0,0 +1,152 @@
+package io.neson.react.notification;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Coalescing of the change feed. Flushes are scheduled on the feed's
+ * handler, the tests run them directly.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class NotificationChangeFeedTest {
+    private final ArrayList<List<NotificationChangeFeed.Event>> batches = new ArrayList<List<NotificationChangeFeed.Event>>();
+
+    private final NotificationChangeFeed.Listener listener = new NotificationChangeFeed.Listener() {
+        @Override
+        public void onChanges(List<NotificationChangeFeed.Event> events) {
+            batches.add(events);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        NotificationChangeFeed.setListener(listener);
+    }
+
+    @After
+    public void tearDown() {
+        NotificationChangeFeed.setListener(null);
+    }
+
+    @Test
+    public void createdThenUpdatedIsCreatedWithTheLatestAttributes() throws Exception {
+        NotificationChangeFeed.created(1, createAttributes(1, "First"));
+        NotificationChangeFeed.updated(1, createAttributes(1, "Second"));
+        flush();
+
+        List<NotificationChangeFeed.Event> events = getOnlyBatch();
+        assertEquals(1, events.size());
+        assertEvent(NotificationChangeFeed.CREATED, 1, events.get(0));
+        assertEquals("Second", events.get(0).attributes.subject);
+    }
+
+    @Test
+    public void createdThenDeletedIsNothing() throws Exception {
+        NotificationChangeFeed.created(1, createAttributes(1, "First"));
+        NotificationChangeFeed.deleted(1);
+        flush();
+
+        assertTrue(batches.isEmpty());
+    }
+
+    @Test
+    public void updatedThenDeletedIsDeleted() throws Exception {
+        NotificationChangeFeed.updated(1, createAttributes(1, "First"));
+        NotificationChangeFeed.expired(1);
+        flush();
+
+        List<NotificationChangeFeed.Event> events = getOnlyBatch();
+        assertEquals(1, events.size());
+        assertEvent(NotificationChangeFeed.EXPIRED, 1, events.get(0));
+        assertNull(events.get(0).attributes);
+    }
+
+    @Test
+    public void firedAndClearedAreKeptAlongTheState() throws Exception {
+        NotificationChangeFeed.updated(1, createAttributes(1, "First"));
+        NotificationChangeFeed.fired(1, 5000L);
+        NotificationChangeFeed.cleared(1);
+        flush();
+
+        List<NotificationChangeFeed.Event> events = getOnlyBatch();
+        assertEquals(3, events.size());
+        assertEvent(NotificationChangeFeed.FIRED, 1, events.get(0));
+        assertEquals(Long.valueOf(5000L), events.get(0).nextFireAt);
+        assertEvent(NotificationChangeFeed.UPDATED, 1, events.get(1));
+        assertEvent(NotificationChangeFeed.CLEARED, 1, events.get(2));
+    }
+
+    @Test
+    public void clearedAllReplacesTheEarlierClears() throws Exception {
+        NotificationChangeFeed.cleared(1);
+        NotificationChangeFeed.clearedAll();
+        NotificationChangeFeed.cleared(2);
+        flush();
+
+        List<NotificationChangeFeed.Event> events = getOnlyBatch();
+        assertEquals(2, events.size());
+        assertEvent(NotificationChangeFeed.CLEARED_ALL, null, events.get(0));
+        assertEvent(NotificationChangeFeed.CLEARED, 2, events.get(1));
+    }
+
+    @Test
+    public void aBurstIsOneBatch() throws Exception {
+        for (int id = 0; id < 500; id++) {
+            NotificationChangeFeed.created(id, createAttributes(id, "First"));
+            NotificationChangeFeed.updated(id, createAttributes(id, "Second"));
+        }
+        flush();
+
+        List<NotificationChangeFeed.Event> events = getOnlyBatch();
+        assertEquals(500, events.size());
+        for (int id = 0; id < 500; id++) assertEvent(NotificationChangeFeed.CREATED, id, events.get(id));
+    }
+
+    @Test
+    public void nothingIsRecordedWithoutAListener() throws Exception {
+        NotificationChangeFeed.setListener(null);
+        NotificationChangeFeed.created(1, createAttributes(1, "First"));
+        NotificationChangeFeed.clearedAll();
+
+        NotificationChangeFeed.setListener(listener);
+        flush();
+
+        assertTrue(batches.isEmpty());
+    }
+
+    private List<NotificationChangeFeed.Event> getOnlyBatch() {
+        assertEquals(1, batches.size());
+        return batches.get(0);
+    }
+
+    private static void assertEvent(String type, Integer id, NotificationChangeFeed.Event event) {
+        assertEquals(type, event.type);
+        assertEquals(id, event.id);
+    }
+
+    private static NotificationAttributes createAttributes(int id, String subject) {
+        NotificationAttributes attributes = new NotificationAttributes();
+        attributes.id = id;
+        attributes.subject = subject;
+        return attributes;
+    }
+
+    private static void flush() throws Exception {
+        Method flush = NotificationChangeFeed.class.getDeclaredMethod("flush");
+        flush.setAccessible(true);
+        flush.invoke(null);
+    }
+}
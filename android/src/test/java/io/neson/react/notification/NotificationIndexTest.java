@@ -0,0 +1,91 @@
+package io.neson.react.notification;
+
+import android.util.SparseArray;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class NotificationIndexTest {
+    private SparseArray<NotificationAttributes> saved;
+    private int reads;
+    private NotificationIndex index;
+
+    @Before
+    public void setUp() {
+        saved = new SparseArray<NotificationAttributes>();
+        reads = 0;
+        index = new NotificationIndex(new NotificationIndex.FieldReader() {
+            @Override
+            public String readAction(int id) {
+                reads++;
+                return saved.get(id).action;
+            }
+
+            @Override
+            public String readPayload(int id, String key) {
+                reads++;
+                return saved.get(id).payload;
+            }
+        });
+    }
+
+    @Test
+    public void actionsAreReadOnTheFirstQueryByAction() {
+        put(1, "OPEN", 3000L);
+        put(2, "DISMISS", 2000L);
+        put(3, "OPEN", 1000L);
+        assertEquals(0, reads);
+
+        assertEquals(Arrays.asList(3, 1), index.query(byAction("OPEN")));
+        assertEquals(3, reads);
+
+        // Maintained from then on
+        put(4, "OPEN", 500L);
+        put(3, "DISMISS", 1000L);
+        index.remove(1);
+        assertEquals(5, reads);
+
+        assertEquals(Arrays.asList(4), index.query(byAction("OPEN")));
+        assertEquals(Arrays.asList(3, 2), index.query(byAction("DISMISS")));
+        assertEquals(5, reads);
+    }
+
+    @Test
+    public void scheduleQueriesReadNothing() {
+        put(1, "OPEN", 3000L);
+        put(2, "OPEN", 1000L);
+
+        NotificationQuery query = new NotificationQuery();
+        query.fireAfter = 2000L;
+
+        assertEquals(Arrays.asList(1), index.query(query));
+        assertEquals(0, reads);
+    }
+
+    private void put(int id, String action, Long nextFireAt) {
+        NotificationAttributes attributes = new NotificationAttributes();
+        attributes.id = id;
+        attributes.action = action;
+        attributes.nextFireAt = nextFireAt;
+        saved.put(id, attributes);
+
+        // The index only gets the header
+        NotificationAttributes header = NotificationAttributesCodec.decodeHeader(NotificationAttributesCodec.encode(attributes));
+        index.put(id, header);
+    }
+
+    private static NotificationQuery byAction(String action) {
+        NotificationQuery query = new NotificationQuery();
+        query.action = action;
+        return query;
+    }
+}
@@ -0,0 +1,307 @@
+package io.neson.react.notification;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hammers the per-id locks of NotificationManager from many threads: single
+ * id operations through getLock(), batches through runLocked() over random
+ * overlapping ids, as the bridge, the receivers and the push service do, and
+ * creates racing the scheduler publishing them.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class NotificationManagerStressTest {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 2000;
+    private static final int IDS = 200;
+    private static final int MAX_BATCH = 16;
+    private static final int PUBLISHING_OPERATIONS = 200;
+
+    // Per id state, changed without synchronization of its own
+    private final int[] counters = new int[IDS];
+    private final boolean[] inside = new boolean[IDS];
+    private final AtomicReference<String> violation = new AtomicReference<String>();
+
+    @Test
+    public void operationsOnAnIdAreMutuallyExclusive() throws Exception {
+        final AtomicInteger expected = new AtomicInteger();
+
+        runThreads(new Worker() {
+            @Override
+            public void run(Random random) {
+                if (random.nextBoolean()) {
+                    final int id = random.nextInt(IDS);
+
+                    synchronized (NotificationManager.getLock(id)) {
+                        touch(id);
+                    }
+                    expected.incrementAndGet();
+
+                } else {
+                    final List<Integer> ids = randomIDs(random);
+
+                    NotificationManager.runLocked(ids, new Runnable() {
+                        @Override
+                        public void run() {
+                            for (int id : ids) touch(id);
+                        }
+                    });
+                    expected.addAndGet(ids.size());
+                }
+            }
+        });
+
+        assertNull(violation.get());
+        assertEquals(expected.get(), sum(counters));
+    }
+
+    @Test
+    public void nestedLocksOfTheSameStripeDoNotDeadlock() throws Exception {
+        // Taking a lock held already by the same thread, e.g. createOrUpdate()
+        // inside a batch, must not block
+        final AtomicInteger expected = new AtomicInteger();
+
+        runThreads(new Worker() {
+            @Override
+            public void run(Random random) {
+                final List<Integer> ids = randomIDs(random);
+
+                NotificationManager.runLocked(ids, new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int id : ids) {
+                            synchronized (NotificationManager.getLock(id)) {
+                                touch(id);
+                            }
+                        }
+                    }
+                });
+                expected.addAndGet(ids.size());
+            }
+        });
+
+        assertNull(violation.get());
+        assertEquals(expected.get(), sum(counters));
+    }
+
+    @Test
+    public void publishingWaitsForTheCreateToCommit() throws Exception {
+        // Already out-dated, so publishing deletes them without showing them
+        final Context context = RuntimeEnvironment.application;
+        final LockCheckingStore store = new LockCheckingStore();
+        final AtomicInteger nextID = new AtomicInteger(1);
+        NotificationManager.setStore(store);
+
+        try {
+            runThreads(PUBLISHING_OPERATIONS, new Worker() {
+                @Override
+                public void run(Random random) {
+                    int operation = random.nextInt(20);
+
+                    if (operation == 0) {
+                        // Takes the locks of all ids
+                        NotificationScheduler.getInstance(context).onTimeChanged();
+                        return;
+                    } else if (operation < 5) {
+                        NotificationScheduler.getInstance(context).publishDue();
+                        return;
+                    }
+
+                    NotificationAttributes attributes = new NotificationAttributes();
+                    attributes.message = "Due now";
+                    attributes.delayed = true;
+                    attributes.scheduled = false;
+                    attributes.delay = 0;
+                    attributes.endAt = System.currentTimeMillis() - 1;
+
+                    NotificationManager.getInstance(context).createOrUpdate(nextID.getAndIncrement(), attributes);
+                }
+            });
+
+            NotificationScheduler.getInstance(context).publishDue();
+
+            assertNull(violation.get());
+            // Published before saved, they would be left in the store
+            assertEquals(0, store.size());
+        } finally {
+            NotificationManager.setStore(null);
+        }
+    }
+
+    @Test
+    public void runLockedTakesEachStripeOnce() {
+        // Ids of the same stripe, and duplicates
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int i = 0; i < 10; i++) ids.add(i * 64);
+        ids.add(0);
+
+        final AtomicInteger runs = new AtomicInteger();
+        NotificationManager.runLocked(ids, new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        });
+
+        assertEquals(1, runs.get());
+    }
+
+    private interface Worker {
+        void run(Random random);
+    }
+
+    private void runThreads(Worker worker) throws Exception {
+        runThreads(OPERATIONS, worker);
+    }
+
+    /**
+     * Run the worker the given times on each of THREADS threads, started at
+     * once. Fails if they don't all finish, e.g. deadlocked.
+     */
+    private void runThreads(final int operations, final Worker worker) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        ArrayList<Thread> threads = new ArrayList<Thread>();
+
+        for (int t = 0; t < THREADS; t++) {
+            final long seed = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Random random = new Random(seed);
+                        start.await();
+                        for (int i = 0; i < operations; i++) worker.run(random);
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        assertTrue("Deadlocked", done.await(60, TimeUnit.SECONDS));
+        if (failure.get() != null) throw new AssertionError(failure.get());
+    }
+
+    /**
+     * Change the state of an id, checking no other thread is changing it.
+     * Must be called while holding the lock of the id.
+     */
+    private void touch(int id) {
+        if (inside[id]) violation.compareAndSet(null, "Concurrent access to " + id);
+        inside[id] = true;
+
+        int value = counters[id];
+        Thread.yield();
+        counters[id] = value + 1;
+
+        inside[id] = false;
+    }
+
+    private static List<Integer> randomIDs(Random random) {
+        int size = 1 + random.nextInt(MAX_BATCH);
+        List<Integer> ids = new ArrayList<Integer>(size);
+
+        for (int i = 0; i < size; i++) ids.add(random.nextInt(IDS));
+
+        // Batches come in any order
+        Collections.shuffle(ids, random);
+
+        return ids;
+    }
+
+    private static int sum(int[] values) {
+        int sum = 0;
+        for (int value : values) sum += value;
+        return sum;
+    }
+
+    /**
+     * In-memory store checking that each change is committed while holding
+     * the lock of its notification.
+     */
+    private class LockCheckingStore implements NotificationStore {
+        private final SparseArray<byte[]> records = new SparseArray<byte[]>();
+
+        synchronized int size() {
+            return records.size();
+        }
+
+        @Override
+        public synchronized SparseArray<NotificationAttributes> loadAll() {
+            SparseArray<NotificationAttributes> attributes = new SparseArray<NotificationAttributes>(records.size());
+            for (int i = 0; i < records.size(); i++) {
+                attributes.put(records.keyAt(i), NotificationAttributesCodec.decode(records.valueAt(i)));
+            }
+            return attributes;
+        }
+
+        @Override
+        public synchronized SparseArray<byte[]> loadAllRecords() {
+            return records.clone();
+        }
+
+        @Override
+        public Transaction edit() {
+            return new Transaction() {
+                // Null for a removal
+                private final SparseArray<byte[]> changes = new SparseArray<byte[]>();
+
+                @Override
+                public Transaction put(int id, NotificationAttributes attributes) {
+                    changes.put(id, NotificationAttributesCodec.encode(attributes));
+                    return this;
+                }
+
+                @Override
+                public Transaction remove(int id) {
+                    changes.put(id, null);
+                    return this;
+                }
+
+                @Override
+                public void commit() {
+                    synchronized (LockCheckingStore.this) {
+                        for (int i = 0; i < changes.size(); i++) {
+                            int id = changes.keyAt(i);
+
+                            if (!Thread.holdsLock(NotificationManager.getLock(id))) {
+                                violation.compareAndSet(null, "Committed " + id + " without its lock");
+                            }
+
+                            if (changes.valueAt(i) == null) records.remove(id);
+                            else records.put(id, changes.valueAt(i));
+                        }
+                    }
+                }
+            };
+        }
+    }
+}
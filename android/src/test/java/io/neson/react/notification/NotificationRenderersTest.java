@@ -0,0 +1,151 @@
+package io.neson.react.notification;
+
+import android.content.Context;
+import android.support.v7.app.NotificationCompat;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class NotificationRenderersTest {
+    private static final String CUSTOM_TYPE = "test.custom";
+
+    @After
+    public void tearDown() {
+        NotificationRenderers.register(CUSTOM_TYPE, null);
+    }
+
+    @Test
+    public void unknownTypesGetTheDefaultRenderer() {
+        assertSame(NotificationRenderers.DEFAULT, NotificationRenderers.get("unknown"));
+        assertSame(NotificationRenderers.DEFAULT, NotificationRenderers.get(null));
+    }
+
+    @Test
+    public void offersGetTheCallRenderer() {
+        assertTrue(NotificationRenderers.get(CallNotificationRenderer.TYPE) instanceof CallNotificationRenderer);
+    }
+
+    @Test
+    public void registeredRenderersReplaceTheDefaultUntilUnregistered() {
+        RecordingRenderer renderer = new RecordingRenderer();
+
+        NotificationRenderers.register(CUSTOM_TYPE, renderer);
+        assertSame(renderer, NotificationRenderers.get(CUSTOM_TYPE));
+
+        NotificationRenderers.register(CUSTOM_TYPE, null);
+        assertSame(NotificationRenderers.DEFAULT, NotificationRenderers.get(CUSTOM_TYPE));
+    }
+
+    @Test
+    public void defaultRendererBuildsTheCommonAttributesAsIs() {
+        Notification notification = createNotification(1, "{\"type\":\"message\"}");
+
+        android.app.Notification built = NotificationRenderers.DEFAULT.render(notification, payloadOf(notification), createBuilder());
+
+        assertNull(built.actions);
+        assertEquals(0, built.flags & android.app.Notification.FLAG_INSISTENT);
+    }
+
+    @Test
+    public void callRendererAddsAnswerAndDenyAndAlertsUntilHandled() {
+        Notification notification = createNotification(2, "{\"type\":\"offer\"}");
+
+        android.app.Notification built = new CallNotificationRenderer().render(notification, payloadOf(notification), createBuilder());
+
+        assertEquals(2, built.actions.length);
+        assertEquals("Answer", built.actions[0].title.toString());
+        assertEquals("Deny", built.actions[1].title.toString());
+        assertNotNull(built.actions[0].actionIntent);
+        assertTrue((built.flags & android.app.Notification.FLAG_INSISTENT) != 0);
+    }
+
+    @Test
+    public void buildDispatchesOnThePayloadType() {
+        RecordingRenderer renderer = new RecordingRenderer();
+        NotificationRenderers.register(CUSTOM_TYPE, renderer);
+
+        createNotification(3, "{\"type\":\"" + CUSTOM_TYPE + "\",\"avatarUrl\":\"https://example.com/a.png\"}").build(null, null);
+
+        assertEquals(1, renderer.calls);
+        assertEquals(CUSTOM_TYPE, renderer.payload.type);
+        assertEquals("https://example.com/a.png", renderer.payload.avatarUrl);
+    }
+
+    @Test
+    public void payloadsWithoutTypeAreNotRendered() {
+        RecordingRenderer renderer = new RecordingRenderer();
+        NotificationRenderers.register(CUSTOM_TYPE, renderer);
+
+        createNotification(4, "{\"cid\":\"c1\"}").build(null, null);
+
+        assertEquals(0, renderer.calls);
+    }
+
+    @Test
+    public void payloadsAreParsedOnce() {
+        Context context = RuntimeEnvironment.application;
+        String payload = "{\"type\":\"message\",\"count\":3,\"from\":{\"name\":\"Alice\"},\"note\":null}";
+
+        NotificationPayload parsed = NotificationResources.getInstance(context).getPayload(payload);
+
+        assertSame(parsed, NotificationResources.getInstance(context).getPayload(payload));
+        assertEquals("message", parsed.type);
+        assertNull(parsed.avatarUrl);
+        assertEquals("3", parsed.getString("count"));
+        assertEquals("{\"name\":\"Alice\"}", parsed.getString("from"));
+        assertNull(parsed.getString("note"));
+        assertNull(parsed.getString("missing"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void payloadsMustBeObjects() {
+        NotificationPayload.parse("[1, 2]");
+    }
+
+    private static Notification createNotification(int id, String payload) {
+        NotificationAttributes attributes = new NotificationAttributes();
+        attributes.id = id;
+        attributes.subject = "Subject";
+        attributes.message = "Message";
+        attributes.payload = payload;
+        attributes.autoClear = true;
+        attributes.inboxStyle = false;
+
+        return new Notification(RuntimeEnvironment.application, id, attributes);
+    }
+
+    private static NotificationPayload payloadOf(Notification notification) {
+        return NotificationPayload.parse(notification.getAttributes().payload);
+    }
+
+    private static NotificationCompat.Builder createBuilder() {
+        return (NotificationCompat.Builder) new NotificationCompat.Builder(RuntimeEnvironment.application)
+            .setSmallIcon(android.R.drawable.ic_dialog_info)
+            .setContentTitle("Subject")
+            .setContentText("Message");
+    }
+
+    private static class RecordingRenderer implements NotificationRenderer {
+        int calls = 0;
+        NotificationPayload payload = null;
+
+        @Override
+        public android.app.Notification render(Notification notification, NotificationPayload payload, NotificationCompat.Builder builder) {
+            calls++;
+            this.payload = payload;
+            return builder.build();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package io.neson.react.notification;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Per-message latency and allocation of turning a push message into
+ * NotificationAttributes, as GCMNotificationListenerService does. "rhino"
+ * is the baseline: the path it replaced, which evaluated the JS encoder in a
+ * new Rhino context for every message, with the Rhino version the library
+ * used to bundle. "gsonRoundTrip" is the part of that path that ran after
+ * the JS encoder: the Gson round trip of its result into loadFromMap().
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PushEncodingBenchmarkTest {
+    static final String MESSAGE = "{\"id\":4242,\"subject\":\"Alice\",\"message\":\"Are we still on for lunch?\"," +
+        "\"smallIcon\":\"ic_stat_chat\",\"payload\":{\"type\":\"message\",\"cid\":\"cid_7906e1ab\",\"from\":\"alice\"," +
+        "\"sentAt\":1460000000000,\"unread\":3},\"groupBy\":\"cid\",\"color\":\"#3f51b5\"}";
+    static final String SCHEDULED_MESSAGE = "{\"id\":4243,\"subject\":\"Reminder\",\"message\":\"Standup\"," +
+        "\"sendAt\":\"2016-04-07T09:30:00+02:00\",\"repeatEvery\":\"week\",\"repeatCount\":10,\"payload\":{\"type\":\"reminder\"}}";
+
+    @Test
+    public void encode() throws Exception {
+        Benchmark.Result result = Benchmark.run("push.encode", new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                return NotificationAttributesEncoder.encode(MESSAGE);
+            }
+        });
+
+        assertTrue(result.nsPerOp > 0);
+    }
+
+    @Test
+    public void encodeScheduled() throws Exception {
+        Benchmark.Result result = Benchmark.run("push.encodeScheduled", new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                return NotificationAttributesEncoder.encode(SCHEDULED_MESSAGE);
+            }
+        });
+
+        assertTrue(result.nsPerOp > 0);
+    }
+
+    @Test
+    public void encodeAndLoad() throws Exception {
+        Benchmark.Result result = Benchmark.run("push.encodeAndLoad", new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                NotificationAttributes attributes = new NotificationAttributes();
+                attributes.loadFromMap(NotificationAttributesEncoder.encode(MESSAGE));
+                return attributes;
+            }
+        });
+
+        assertTrue(result.nsPerOp > 0);
+    }
+
+    @Test
+    public void rhino() throws Exception {
+        final String source = readResource("encode-native-notification.min.js");
+        final Gson gson = new Gson();
+
+        NotificationAttributes expected = new NotificationAttributes();
+        expected.loadFromMap(NotificationAttributesEncoder.encode(MESSAGE));
+        NotificationAttributes encoded = encodeWithRhino(source, gson);
+        assertEquals(expected.subject, encoded.subject);
+        assertEquals(expected.payload, encoded.payload);
+
+        Benchmark.Result result = Benchmark.run("push.rhino", new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                return encodeWithRhino(source, gson);
+            }
+        });
+
+        assertTrue(result.nsPerOp > 0);
+    }
+
+    @Test
+    public void gsonRoundTrip() throws Exception {
+        final Gson gson = new Gson();
+        final String encoded = gson.toJson(NotificationAttributesEncoder.encode(MESSAGE));
+
+        Benchmark.Result result = Benchmark.run("push.gsonRoundTrip", new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                Map<String, Object> map = gson.fromJson(encoded, new TypeToken<Map<String, Object>>() {}.getType());
+                NotificationAttributes attributes = new NotificationAttributes();
+                attributes.loadFromMap(map);
+                return attributes;
+            }
+        });
+
+        assertTrue(result.nsPerOp > 0);
+    }
+
+    /**
+     * The replaced sendSysNotification(), short of the create. It never
+     * exited its context, the benchmark does so they don't pile up.
+     */
+    private static NotificationAttributes encodeWithRhino(String source, Gson gson) {
+        Context rhino = Context.enter();
+
+        try {
+            rhino.setOptimizationLevel(-1);
+            Scriptable scope = rhino.initStandardObjects();
+            rhino.evaluateString(scope, source, "script", 1, null);
+
+            Function function = (Function) scope.get("encodeNativeNotification", scope);
+            Object parsedParams = function.call(rhino, scope, scope, new Object[] { MESSAGE });
+
+            // Logged as JSON
+            Benchmark.sink += gson.toJson(parsedParams).length();
+
+            NotificationAttributes attributes = new NotificationAttributes();
+            attributes.loadFromMap((Map) parsedParams);
+            return attributes;
+        } finally {
+            Context.exit();
+        }
+    }
+
+    private static String readResource(String name) throws Exception {
+        Reader reader = new InputStreamReader(PushEncodingBenchmarkTest.class.getClassLoader().getResourceAsStream(name), "UTF-8");
+        StringWriter writer = new StringWriter();
+
+        try {
+            char[] buffer = new char[4096];
+            for (int read; (read = reader.read(buffer)) != -1; ) writer.write(buffer, 0, read);
+        } finally {
+            reader.close();
+        }
+
+        return writer.toString();
+    }
+}
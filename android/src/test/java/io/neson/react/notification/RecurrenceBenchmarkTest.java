@@ -0,0 +1,53 @@
+package io.neson.react.notification;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Latency of computing the next fire time, which the scheduler does for
+ * every notification it publishes and, after a time zone change, for every
+ * calendar repeat. `after` is a year past sendAt, as for a long-lived repeat.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class RecurrenceBenchmarkTest {
+    private static final long SEND_AT = 1460000000000L;
+    private static final long AFTER = SEND_AT + 365 * 24 * 3600 * 1000L + 12345;
+
+    @Test
+    public void nextMinute() throws Exception {
+        run("minute");
+    }
+
+    @Test
+    public void nextDay() throws Exception {
+        run("day");
+    }
+
+    @Test
+    public void nextWeek() throws Exception {
+        run("week");
+    }
+
+    @Test
+    public void nextMonth() throws Exception {
+        run("month");
+    }
+
+    private static void run(String repeatType) throws Exception {
+        final NotificationAttributes attributes = NotificationAttributesCodecTest.createFullAttributes();
+        attributes.repeatType = repeatType;
+        assertNotNull(NotificationRecurrence.next(attributes, AFTER));
+
+        Benchmark.run("recurrence.next." + repeatType, new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                return NotificationRecurrence.next(attributes, AFTER);
+            }
+        });
+    }
+}
@@ -0,0 +1,99 @@
+package io.neson.react.notification;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.SparseArray;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class SharedPreferencesNotificationStoreTest {
+    private static final String LEGACY_JSON = "{\"id\":7,\"subject\":\"Hey\",\"scheduled\":true,\"sendAt\":1460000000000,\"repeatType\":\"day\"}";
+
+    private SharedPreferences preferences;
+    private SharedPreferencesNotificationStore store;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        preferences = context.getSharedPreferences(NotificationManager.PREFERENCES_KEY, Context.MODE_PRIVATE);
+        preferences.edit().clear().commit();
+        store = new SharedPreferencesNotificationStore(context);
+    }
+
+    @Test
+    public void loadAllRecordsMigratesLegacyJSON() {
+        preferences.edit().putString("7", LEGACY_JSON).commit();
+
+        SparseArray<byte[]> records = store.loadAllRecords();
+
+        assertEquals(1, records.size());
+        NotificationAttributes attributes = NotificationAttributesCodec.decode(records.get(7));
+        assertEquals("Hey", attributes.subject);
+        assertEquals(Long.valueOf(1460000000000L), attributes.sendAt);
+
+        // Saved back as the binary record, not parsed again
+        String stored = preferences.getString("7", null);
+        assertFalse(NotificationAttributesCodec.isLegacyJSON(stored));
+        assertEquals(NotificationAttributesCodec.recordToString(records.get(7)), stored);
+    }
+
+    @Test
+    public void loadAllMigratesLegacyJSON() {
+        preferences.edit().putString("7", LEGACY_JSON).commit();
+
+        SparseArray<NotificationAttributes> attributes = store.loadAll();
+
+        assertEquals("Hey", attributes.get(7).subject);
+        assertFalse(NotificationAttributesCodec.isLegacyJSON(preferences.getString("7", null)));
+    }
+
+    @Test
+    public void binaryEntriesAreLeftAsIs() {
+        String stored = NotificationAttributesCodec.encodeToString(NotificationAttributesCodecTest.createFullAttributes());
+        preferences.edit().putString("42", stored).commit();
+
+        SparseArray<byte[]> records = store.loadAllRecords();
+
+        assertEquals(NotificationAttributesCodecTest.toJson(NotificationAttributesCodecTest.createFullAttributes()),
+            NotificationAttributesCodecTest.toJson(NotificationAttributesCodec.decode(records.get(42))));
+        assertEquals(stored, preferences.getString("42", null));
+    }
+
+    @Test
+    public void unreadableEntriesAreSkipped() {
+        preferences.edit().putString("1", "{not json").putString("7", LEGACY_JSON).commit();
+
+        SparseArray<byte[]> records = store.loadAllRecords();
+
+        assertEquals(1, records.size());
+        assertNull(records.get(1));
+    }
+
+    @Test
+    public void transactionsPutAndRemove() {
+        NotificationAttributes attributes = NotificationAttributesCodecTest.createFullAttributes();
+
+        store.edit().put(42, attributes).put(43, attributes).commit();
+        store.edit().remove(43).commit();
+
+        SparseArray<NotificationAttributes> loaded = store.loadAll();
+        assertEquals(1, loaded.size());
+        assertEquals(NotificationAttributesCodecTest.toJson(attributes), NotificationAttributesCodecTest.toJson(loaded.get(42)));
+        assertFalse(store.isEmpty());
+
+        store.clear();
+        assertTrue(store.isEmpty());
+    }
+}
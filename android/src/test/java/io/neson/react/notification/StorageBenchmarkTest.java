@@ -0,0 +1,117 @@
+package io.neson.react.notification;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Collections;
+import java.util.Map;
+
+import com.google.gson.Gson;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Per-notification latency and allocation of saving and loading attributes.
+ * Notifications are saved as binary records in stored strings; "gson" stands
+ * for the JSON the earlier versions saved, which is still read once when
+ * migrating.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class StorageBenchmarkTest {
+    private static final NotificationAttributes ATTRIBUTES = NotificationAttributesCodecTest.createFullAttributes();
+    private static final byte[] RECORD = NotificationAttributesCodec.encode(ATTRIBUTES);
+    private static final String STORED = NotificationAttributesCodec.recordToString(RECORD);
+    private static final String JSON = new Gson().toJson(ATTRIBUTES);
+
+    @Test
+    public void encode() throws Exception {
+        Map<String, Integer> size = Collections.singletonMap("bytes", RECORD.length);
+
+        Benchmark.Result result = Benchmark.run("storage.encode", size, new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                return NotificationAttributesCodec.encode(ATTRIBUTES);
+            }
+        });
+
+        assertTrue(result.nsPerOp > 0);
+    }
+
+    @Test
+    public void decode() throws Exception {
+        Benchmark.Result result = Benchmark.run("storage.decode", new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                return NotificationAttributesCodec.decode(RECORD);
+            }
+        });
+
+        assertTrue(result.nsPerOp > 0);
+    }
+
+    @Test
+    public void decodeHeader() throws Exception {
+        Benchmark.Result result = Benchmark.run("storage.decodeHeader", new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                return NotificationAttributesCodec.decodeHeader(RECORD);
+            }
+        });
+
+        assertTrue(result.nsPerOp > 0);
+    }
+
+    @Test
+    public void saveAndLoadString() throws Exception {
+        Benchmark.Result result = Benchmark.run("storage.saveAndLoadString", new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                return NotificationAttributesCodec.decodeFromString(NotificationAttributesCodec.encodeToString(ATTRIBUTES));
+            }
+        });
+
+        assertTrue(result.nsPerOp > 0);
+    }
+
+    @Test
+    public void loadString() throws Exception {
+        Benchmark.Result result = Benchmark.run("storage.loadString", new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                return NotificationAttributesCodec.decodeFromString(STORED);
+            }
+        });
+
+        assertTrue(result.nsPerOp > 0);
+    }
+
+    @Test
+    public void gsonSaveAndLoad() throws Exception {
+        final Gson gson = new Gson();
+        Map<String, Integer> size = Collections.singletonMap("bytes", JSON.length());
+
+        Benchmark.Result result = Benchmark.run("storage.gsonSaveAndLoad", size, new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                return gson.fromJson(gson.toJson(ATTRIBUTES), NotificationAttributes.class);
+            }
+        });
+
+        assertTrue(result.nsPerOp > 0);
+    }
+
+    @Test
+    public void loadLegacyJSON() throws Exception {
+        Benchmark.Result result = Benchmark.run("storage.loadLegacyJSON", new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                return NotificationAttributesCodec.decodeFromString(JSON);
+            }
+        });
+
+        assertTrue(result.nsPerOp > 0);
+    }
+}
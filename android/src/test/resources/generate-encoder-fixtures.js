@@ -0,0 +1,25 @@
+// Fills in the expected outputs of encoder-fixtures.json by running the
+// inputs through encodeNativeNotification of index.android.js, in the time
+// zone of the corpus. Run it after changing either:
+//
+//   node android/src/test/resources/generate-encoder-fixtures.js
+
+var fs = require('fs');
+var path = require('path');
+
+var fixturesFile = path.join(__dirname, 'encoder-fixtures.json');
+var corpus = JSON.parse(fs.readFileSync(fixturesFile, 'utf8'));
+
+process.env.TZ = corpus.timeZone;
+
+var source = fs.readFileSync(path.join(__dirname, '../../../../index.android.js'), 'utf8');
+var start = source.indexOf('function encodeNativeNotification(');
+var end = source.indexOf('\n}\n', start) + 2;
+var encodeNativeNotification = new Function(source.slice(start, end) + '\nreturn encodeNativeNotification;')();
+
+corpus.fixtures.forEach(function(fixture) {
+  var input = JSON.parse(JSON.stringify(fixture.input));
+  fixture.expected = JSON.parse(JSON.stringify(encodeNativeNotification(input)));
+});
+
+fs.writeFileSync(fixturesFile, JSON.stringify(corpus, null, 2) + '\n');
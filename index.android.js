@@ -5,6 +5,9 @@ var { DeviceEventEmitter } = React;
 
 var NotificationModule = require('react-native').NativeModules.NotificationModule;
 
+// Number of 'change' listeners, the change feed runs while there is one
+var changeListenerCount = 0;
+
 // Warp the native module so we can do some pre/post processing to have a cleaner API.
 var Notification = {
   create: function(attributes = {}) {
@@ -22,6 +25,22 @@ var Notification = {
     });
   },
 
+  createMany: function(attributesList = []) {
+    return new Promise(function(resolve, reject) {
+      NotificationModule.rGetApplicationName(function(e) {}, function(applicationName) {
+        var encodedList = attributesList.map(function(attributes) {
+          // Set defaults
+          if (!attributes.subject) attributes.subject = applicationName;
+          return encodeNativeNotification(attributes);
+        });
+
+        NotificationModule.rCreateBatch(encodedList, reject, function(results) {
+          resolve(results.map(decodeBatchResult));
+        });
+      });
+    });
+  },
+
   getIDs: function() {
     return new Promise(function(resolve, reject) {
       NotificationModule.rGetIDs(reject, resolve);
@@ -36,6 +55,21 @@ var Notification = {
     });
   },
 
+  query: function(criteria = {}) {
+    var encoded = Object.assign({}, criteria);
+
+    if (encoded.fireAfter) encoded.fireAfter = new Date(encoded.fireAfter).getTime();
+    if (encoded.fireBefore) encoded.fireBefore = new Date(encoded.fireBefore).getTime();
+    if (encoded.payloadValue !== undefined && encoded.payloadValue !== null) encoded.payloadValue = String(encoded.payloadValue);
+
+    return new Promise(function(resolve, reject) {
+      NotificationModule.rQuery(encoded, reject, function(result) {
+        result.notifications = result.notifications.map(decodeNativeNotification);
+        resolve(result);
+      });
+    });
+  },
+
   delete: function(id) {
     return new Promise(function(resolve, reject) {
       NotificationModule.rDelete(id, reject, function(notification) {
@@ -44,6 +78,14 @@ var Notification = {
     });
   },
 
+  deleteMany: function(ids) {
+    return new Promise(function(resolve, reject) {
+      NotificationModule.rDeleteBatch(ids, reject, function(results) {
+        resolve(results.map(decodeBatchResult));
+      });
+    });
+  },
+
   deleteAll: function() {
     return new Promise(function(resolve, reject) {
       NotificationModule.rDeleteAll(reject, resolve);
@@ -58,12 +100,62 @@ var Notification = {
     });
   },
 
+  clearMany: function(ids) {
+    return new Promise(function(resolve, reject) {
+      NotificationModule.rClearBatch(ids, reject, function(results) {
+        resolve(results.map(decodeBatchResult));
+      });
+    });
+  },
+
   clearAll: function() {
     return new Promise(function(resolve, reject) {
       NotificationModule.rClearAll(reject, resolve);
     });
   },
 
+  getImageCacheStats: function() {
+    return new Promise(function(resolve, reject) {
+      NotificationModule.rGetImageCacheStats(reject, resolve);
+    });
+  },
+
+  getMetrics: function() {
+    return new Promise(function(resolve, reject) {
+      NotificationModule.rGetMetrics(reject, resolve);
+    });
+  },
+
+  resetMetrics: function() {
+    return new Promise(function(resolve, reject) {
+      NotificationModule.rResetMetrics(reject, resolve);
+    });
+  },
+
+  collectGarbage: function() {
+    return new Promise(function(resolve, reject) {
+      NotificationModule.rCollectGarbage(reject, resolve);
+    });
+  },
+
+  setCollectInterval: function(interval) {
+    return new Promise(function(resolve, reject) {
+      NotificationModule.rSetCollectInterval(interval, reject, resolve);
+    });
+  },
+
+  setRateLimits: function(limits) {
+    limits = limits || {};
+
+    // -1 leaves the limit unchanged
+    var perNotification = (limits.perNotification == null) ? -1 : limits.perNotification;
+    var global = (limits.global == null) ? -1 : limits.global;
+
+    return new Promise(function(resolve, reject) {
+      NotificationModule.rSetRateLimits(perNotification, global, reject, resolve);
+    });
+  },
+
   addListener: function(type, listener) {
     switch (type) {
       case 'press':
@@ -86,6 +178,19 @@ var Notification = {
         });
         
         break;
+
+      case 'change':
+        DeviceEventEmitter.addListener('sysNotificationChanges', function(changes) {
+          listener(changes.map(function(change) {
+            if (change.notification) change.notification = decodeNativeNotification(change.notification);
+            if (change.nextFireAt) change.nextFireAt = new Date(change.nextFireAt);
+            return change;
+          }));
+        });
+
+        // The native side only records changes while someone listens
+        if (changeListenerCount++ === 0) NotificationModule.rStartChangeFeed();
+        break;
     }
   },
 
@@ -95,6 +200,13 @@ var Notification = {
       case 'click':
         DeviceEventEmitter.removeAllListeners('sysNotificationClick');
         break;
+
+      case 'change':
+        DeviceEventEmitter.removeAllListeners('sysNotificationChanges');
+
+        if (changeListenerCount > 0) NotificationModule.rStopChangeFeed();
+        changeListenerCount = 0;
+        break;
     }
   },
 
@@ -104,6 +216,7 @@ var Notification = {
 module.exports = Notification;
 
 // Encode the JS notification to pass into the native model
+// (mirrored by NotificationAttributesEncoder.java for push notifications)
 function encodeNativeNotification(attributes) {
   if (typeof attributes === 'string') attributes = JSON.parse(attributes);
   // Set defaults
@@ -199,11 +312,7 @@ function encodeNativeNotification(attributes) {
     }
   }
 
-  // Convert long numbers into string before passing them into native modle,
-  // incase of integer overflow
-  if (attributes.sendAt) attributes.sendAt = attributes.sendAt.toString();
-  if (attributes.endAt) attributes.endAt = attributes.endAt.toString();
-  if (attributes.when) attributes.when = attributes.when.toString();
+  // Timestamps stay numbers, the native module reads them as doubles
   if (attributes.repeatEvery) attributes.repeatEvery = attributes.repeatEvery.toString();
 
   // Convert float into integer
@@ -218,9 +327,9 @@ function encodeNativeNotification(attributes) {
 // Decode the notification data from the native module to pass into JS
 function decodeNativeNotification(attributes) {
   // Convert dates back to date object
-  if (attributes.sendAt) attributes.sendAt = new Date(parseInt(attributes.sendAt));
-  if (attributes.endAt) attributes.endAt = new Date(parseInt(attributes.endAt));
-  if (attributes.when) attributes.when = new Date(parseInt(attributes.when));
+  if (attributes.sendAt) attributes.sendAt = new Date(Number(attributes.sendAt));
+  if (attributes.endAt) attributes.endAt = new Date(Number(attributes.endAt));
+  if (attributes.when) attributes.when = new Date(Number(attributes.when));
 
   // Parse possible integer
   if (parseInt(attributes.repeatEvery).toString() === attributes.repeatEvery) attributes.repeatEvery = parseInt(attributes.repeatEvery);
@@ -234,6 +343,13 @@ function decodeNativeNotification(attributes) {
   return attributes;
 }
 
+// Decode a per-notification result of the batch methods
+function decodeBatchResult(result) {
+  if (result.notification) result.notification = decodeNativeNotification(result.notification);
+
+  return result;
+}
+
 DeviceEventEmitter.addListener('sysModuleNotificationClick', function(e) {
   var event = {
     action: e.action,